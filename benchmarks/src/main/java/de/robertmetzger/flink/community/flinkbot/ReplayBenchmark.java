@@ -0,0 +1,76 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the whole bot, as wired by the {@link Launcher}, against GitHub traffic recorded with gh.recordFile and
+ * reports its throughput. Useful for comparing optimizations on realistic data without talking to GitHub.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar de.robertmetzger.flink.community.flinkbot.ReplayBenchmark \
+ *     fixtures.jsonl config.properties [speed-up, default 10] [max seconds, default 300]
+ * </pre>
+ *
+ * The configuration is the one used for recording. The API url, the state and cache directories are replaced. Use
+ * repo.&lt;owner/name&gt;.checks to leave out checks which talk to other services than GitHub, such as the Jira check.
+ * The run ends once no recorded response has been served for the first time for five seconds.
+ */
+public class ReplayBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2) {
+            System.err.println("Usage: ReplayBenchmark <fixtures> <config.properties> [speed-up] [max seconds]");
+            System.exit(1);
+        }
+        double speedUp = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        long maxSeconds = args.length > 3 ? Long.parseLong(args[3]) : 300;
+
+        Properties prop = new Properties();
+        try (InputStream config = Files.newInputStream(new File(args[1]).toPath())) {
+            prop.load(config);
+        }
+        ReplayServer server = new ReplayServer(new File(args[0]), 0, speedUp);
+        server.start();
+
+        File workDir = Files.createTempDirectory("flinkbot-replay").toFile();
+        prop.setProperty("gh.apiUrl", server.getUrl());
+        prop.setProperty("gh.graphqlUrl", server.getUrl() + "/graphql");
+        prop.setProperty("main.cacheDir", new File(workDir, "cache").getPath());
+        prop.setProperty("main.stateDir", new File(workDir, "state").getPath());
+        prop.putIfAbsent("main.initialScanDelaySeconds", "0");
+        prop.remove("gh.recordFile");
+        prop.remove("webhook.port");
+        prop.remove("main.metricsPort");
+
+        long start = System.nanoTime();
+        Launcher.start(prop);
+        waitUntilIdle(server, start, maxSeconds);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long mentions = Metrics.total("flinkbot_mentions_total");
+        long updated = Metrics.total("flinkbot_pull_request_update_duration_seconds");
+        long scanned = Metrics.total("flinkbot_scanned_pull_requests_total");
+        long requests = server.getRequests();
+        System.out.println();
+        System.out.printf("Replayed %d requests in %.1f s (%d without recording)%n", requests, seconds, server.getUnmatched());
+        System.out.printf("PRs scanned:    %8d  %10.1f PRs/s%n", scanned, scanned / seconds);
+        System.out.printf("PRs updated:    %8d  %10.1f PRs/s%n", updated, updated / seconds);
+        System.out.printf("Mentions:       %8d  %10.1f mentions/s%n", mentions, mentions / seconds);
+        System.out.printf("API calls per mention: %.1f%n", mentions == 0 ? 0.0 : (double) requests / mentions);
+        System.exit(0);
+    }
+
+    private static void waitUntilIdle(ReplayServer server, long start, long maxSeconds) throws InterruptedException {
+        long deadline = start + TimeUnit.SECONDS.toNanos(maxSeconds);
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(500);
+            if(server.getRequests() > 0 && server.getMillisSinceProgress() > 5000) {
+                return;
+            }
+        }
+    }
+}
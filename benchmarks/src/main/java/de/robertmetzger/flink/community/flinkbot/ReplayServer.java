@@ -0,0 +1,197 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the GitHub API exchanges recorded by {@link TrafficRecorder} locally, so that the bot can be driven without
+ * talking to GitHub.
+ *
+ * Requests are matched by method and path (and the query for GraphQL requests). Repeated requests get the recorded
+ * responses in the recorded order, and the last one once they are used up. The recorded latencies and poll intervals
+ * are divided by the speed-up factor.
+ */
+public class ReplayServer {
+    private static Logger LOG = LoggerFactory.getLogger(ReplayServer.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, List<JsonNode>> exchanges = new HashMap<>();
+    private final Map<String, AtomicInteger> served = new HashMap<>();
+    private final double speedUp;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "Replay server");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong unmatched = new AtomicLong();
+    // when a recorded response has been served for the first time
+    private volatile long lastProgressNanos = System.nanoTime();
+
+    /**
+     * @param speedUp the recorded latencies are divided by this factor. With 0, responses are sent immediately.
+     */
+    public ReplayServer(File fixtures, int port, double speedUp) throws IOException {
+        this.speedUp = speedUp;
+        try (BufferedReader reader = Files.newBufferedReader(fixtures.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if(line.trim().isEmpty()) {
+                    continue;
+                }
+                JsonNode exchange = MAPPER.readTree(line);
+                String key = key(exchange.path("method").asText(), exchange.path("path").asText(), exchange.path("requestBody").asText());
+                exchanges.computeIfAbsent(key, k -> new ArrayList<>()).add(exchange);
+                served.put(key, new AtomicInteger());
+            }
+        }
+        LOG.info("Loaded {} distinct requests from {}", exchanges.size(), fixtures);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Replaying GitHub on {}", getUrl());
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * The url to use instead of the GitHub API url.
+     */
+    public String getUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Number of requests received so far.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Number of requests without a recorded exchange.
+     */
+    public long getUnmatched() {
+        return unmatched.get();
+    }
+
+    /**
+     * Time since a recorded response has been served for the first time. Once all recorded responses have been
+     * served, the bot only repeats its polling.
+     */
+    public long getMillisSinceProgress() {
+        return (System.nanoTime() - lastProgressNanos) / 1_000_000;
+    }
+
+    private void handle(HttpExchange http) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String path = http.getRequestURI().getRawPath();
+            if(http.getRequestURI().getRawQuery() != null) {
+                path += "?" + http.getRequestURI().getRawQuery();
+            }
+            String requestBody = new String(readFully(http.getRequestBody()), StandardCharsets.UTF_8);
+            String key = key(http.getRequestMethod(), path, requestBody);
+            List<JsonNode> recorded = exchanges.get(key);
+            if(recorded == null) {
+                unmatched.incrementAndGet();
+                LOG.warn("No recorded exchange for {}", key);
+                respond(http, 404, "{\"message\": \"Not recorded\"}".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            int index = served.get(key).getAndIncrement();
+            if(index < recorded.size()) {
+                lastProgressNanos = System.nanoTime();
+            }
+            JsonNode exchange = recorded.get(Math.min(index, recorded.size() - 1));
+            if(speedUp > 0) {
+                Thread.sleep((long) (exchange.path("millis").asLong() / speedUp));
+            }
+            String recordedUrl = exchange.path("apiUrl").asText();
+            for(Iterator<Map.Entry<String, JsonNode>> headers = exchange.path("headers").fields(); headers.hasNext(); ) {
+                Map.Entry<String, JsonNode> header = headers.next();
+                String value = header.getValue().asText();
+                if(header.getKey().equals("X-Poll-Interval") && speedUp > 0) {
+                    value = String.valueOf(Math.max(1, (long) (Long.parseLong(value) / speedUp)));
+                }
+                http.getResponseHeaders().set(header.getKey(), value.replace(recordedUrl, getUrl()));
+            }
+            String etag = exchange.path("headers").path("ETag").asText(null);
+            if(etag != null && etag.equals(http.getRequestHeaders().getFirst("If-None-Match"))) {
+                respond(http, 304, new byte[0]);
+                return;
+            }
+            byte[] body = exchange.path("body").asText().replace(recordedUrl, getUrl()).getBytes(StandardCharsets.UTF_8);
+            respond(http, exchange.path("status").asInt(), body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            http.close();
+        } catch (Throwable t) {
+            LOG.warn("Error while replaying exchange", t);
+            respond(http, 500, new byte[0]);
+        }
+    }
+
+    /**
+     * GraphQL requests only differ in their query, writes (such as updated comments) are matched by their path.
+     */
+    private static String key(String method, String path, String requestBody) {
+        if(path.endsWith("/graphql")) {
+            return method + " " + path + " " + requestBody;
+        }
+        return method + " " + path;
+    }
+
+    private static void respond(HttpExchange http, int status, byte[] body) throws IOException {
+        if(status == 304 || status == 204 || body.length == 0) {
+            http.sendResponseHeaders(status, -1);
+        } else {
+            http.sendResponseHeaders(status, body.length);
+            http.getResponseBody().write(body);
+        }
+        http.close();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
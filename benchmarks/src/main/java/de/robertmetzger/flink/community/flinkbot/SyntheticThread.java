@@ -0,0 +1,233 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.kohsuke.github.GHCommitPointer;
+import org.kohsuke.github.GHIssue;
+import org.kohsuke.github.GHIssueComment;
+import org.kohsuke.github.GHLabel;
+import org.kohsuke.github.GHObject;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHPullRequestReview;
+import org.kohsuke.github.GHUser;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates pull request threads with a deterministic mix of comments and reviews, without any GitHub connection.
+ */
+public class SyntheticThread {
+    static final int PR_NUMBER = 666;
+    static final String BOT_NAME = "flinkbot";
+
+    private static final String[] USERS = {"fhueske", "rmetzger", "trohrmann", "uce", "zentol", "twalthr", "contributor"};
+    private static final String[] ASPECTS = {"description", "consensus", "architecture", "quality"};
+    private static final String CHATTER = "Thanks for the update, the changes look reasonable to me. " +
+            "I left a few comments inline, mostly about naming and the test coverage of the new code path.";
+
+    public enum Mix {
+        /** Mostly short comments with approve / disapprove / approve-until / attention commands. */
+        COMMANDS,
+        /** Mostly long comments, only some of which contain commands. */
+        LONG_BODIES
+    }
+
+    private final GHPullRequest pullRequest = new PullRequest();
+    private final List<GHObject> comments;
+
+    public SyntheticThread(String trackingMessage, int size, Mix mix, long seed) {
+        Random random = new Random(seed);
+        comments = new ArrayList<>(size);
+        comments.add(new Comment(1, BOT_NAME, trackingMessage));
+        for(int i = 1; i < size; i++) {
+            String user = USERS[random.nextInt(USERS.length)];
+            String body;
+            if(mix == Mix.COMMANDS || random.nextInt(10) == 0) {
+                body = command(random);
+            } else {
+                body = longBody(random);
+            }
+            if(random.nextInt(5) == 0) {
+                comments.add(new Review(i + 1, user, body));
+            } else {
+                comments.add(new Comment(i + 1, user, body));
+            }
+        }
+    }
+
+    public GHPullRequest getPullRequest() {
+        return pullRequest;
+    }
+
+    public List<GHObject> getComments() {
+        return comments;
+    }
+
+    private static String command(Random random) {
+        String aspect = ASPECTS[random.nextInt(ASPECTS.length)];
+        switch (random.nextInt(7)) {
+            case 0:
+                return "@" + BOT_NAME + " approve " + aspect;
+            case 1:
+                return "Looks good!\n@" + BOT_NAME + " approve " + aspect + " " + ASPECTS[random.nextInt(ASPECTS.length)] + ".";
+            case 2:
+                return "@" + BOT_NAME + " approve all";
+            case 3:
+                return "@" + BOT_NAME + " approve-until " + aspect;
+            case 4:
+                return "@" + BOT_NAME + " disapprove " + aspect;
+            case 5:
+                return "@" + BOT_NAME + " attention @" + USERS[random.nextInt(USERS.length)] + " @" + USERS[random.nextInt(USERS.length)];
+            default:
+                return CHATTER;
+        }
+    }
+
+    private static String longBody(Random random) {
+        StringBuilder body = new StringBuilder();
+        int paragraphs = 5 + random.nextInt(30);
+        for(int i = 0; i < paragraphs; i++) {
+            body.append(CHATTER).append('\n');
+            if(random.nextInt(4) == 0) {
+                body.append("```java\nfor(int i = 0; i < n; i++) {\n    process(records[i]);\n}\n```\n");
+            }
+        }
+        return body.toString();
+    }
+
+    // ------------------------------------ offline GitHub objects ------------------------------------
+
+    private static class PullRequest extends GHPullRequest {
+        private final GHCommitPointer head = new GHCommitPointer() {
+            @Override
+            public String getSha() {
+                return "6586e48ad887669dbb14c26440964a913176ac12";
+            }
+        };
+
+        @Override
+        public int getNumber() {
+            return PR_NUMBER;
+        }
+
+        @Override
+        public String getTitle() {
+            return "[FLINK-12345] Synthetic pull request";
+        }
+
+        @Override
+        public GHCommitPointer getHead() {
+            return head;
+        }
+
+        @Override
+        public Collection<GHLabel> getLabels() {
+            return Collections.emptyList();
+        }
+    }
+
+    private static class Issue extends GHIssue {
+        static final Issue INSTANCE = new Issue();
+
+        @Override
+        public int getNumber() {
+            return PR_NUMBER;
+        }
+
+        @Override
+        public String getTitle() {
+            return "[FLINK-12345] Synthetic pull request";
+        }
+    }
+
+    private static class Comment extends GHIssueComment {
+        private final long id;
+        private final String user;
+        private final String body;
+        private final Date createdAt;
+
+        Comment(long id, String user, String body) {
+            this.id = id;
+            this.user = user;
+            this.body = body;
+            this.createdAt = new Date(id * 1000);
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public String getUserName() {
+            return user;
+        }
+
+        @Override
+        public String getBody() {
+            return body;
+        }
+
+        @Override
+        public Date getCreatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public Date getUpdatedAt() {
+            return createdAt;
+        }
+
+        @Override
+        public GHIssue getParent() {
+            return Issue.INSTANCE;
+        }
+
+        @Override
+        public void update(String body) {
+            // the rendered comment is discarded
+        }
+    }
+
+    private static class Review extends GHPullRequestReview {
+        private final long id;
+        private final GHUser user;
+        private final String body;
+        private final Date createdAt;
+
+        Review(long id, String login, String body) {
+            this.id = id;
+            this.user = new GHUser() {
+                @Override
+                public String getLogin() {
+                    return login;
+                }
+            };
+            this.body = body;
+            this.createdAt = new Date(id * 1000);
+        }
+
+        @Override
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public GHUser getUser() {
+            return user;
+        }
+
+        @Override
+        public String getBody() {
+            return body;
+        }
+
+        @Override
+        public Date getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
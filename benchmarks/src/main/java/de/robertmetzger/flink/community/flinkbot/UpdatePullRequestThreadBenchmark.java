@@ -0,0 +1,82 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Benchmarks parsing all commands of a pull request thread and rendering its tracking comment.
+ *
+ * Run with the GC profiler to see the allocation rate: {@code java -jar target/benchmarks.jar -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdatePullRequestThreadBenchmark {
+
+    private static final String TRACKING_MESSAGE = "Thanks a lot for your contribution to the Apache Flink project. I'm the @flinkbot. I help the community\n" +
+            "to review your pull request. We will use this comment to track the progress of the review.\n" +
+            "\n" +
+            "\n" +
+            "## Automated Checks\n" +
+            "Last check on commit 6586e48ad887669dbb14c26440964a913176ac12 (Fri May 24 14:00:00 CET 2019)\n" +
+            "\n" +
+            " ✅no warnings\n" +
+            "\n" +
+            "<sub>Mention the bot in a comment to re-run the automated checks.</sub>\n" +
+            "## Review Progress\n" +
+            "\n" +
+            "* ❓ 1. The [description] looks good.\n" +
+            "* ❓ 2. There is [consensus] that the contribution should go into to Flink.\n" +
+            "* ❓ 3. Needs [attention] from.\n" +
+            "* ❓ 4. The change fits into the overall [architecture].\n" +
+            "* ❓ 5. Overall code [quality] is good.\n";
+
+    private static final String[] PMC = {"fhueske", "rmetzger", "zentol", "twalthr"};
+    private static final String[] COMMITTERS = {"trohrmann", "uce"};
+
+    @Param({"10", "1000", "50000"})
+    public int comments;
+
+    @Param({"COMMANDS", "LONG_BODIES"})
+    public SyntheticThread.Mix mix;
+
+    private Flinkbot bot;
+    private SyntheticThread thread;
+    private CheckRunner checkRunner;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // stub only: mocks which record their invocations would grow during the benchmark
+        Github gh = mock(Github.class, withSettings().stubOnly());
+        when(gh.getBotName()).thenReturn(SyntheticThread.BOT_NAME);
+        // no automated checks, they would talk to GitHub and Jira
+        checkRunner = new CheckRunner(new PullRequestCheck[0], 1, 1000);
+        bot = new Flinkbot(gh, COMMITTERS, PMC, PullRequestStateStore.inMemory(),
+                new StripedExecutor("Benchmark processor", 1), checkRunner);
+        thread = new SyntheticThread(TRACKING_MESSAGE, comments, mix, 42);
+    }
+
+    @Benchmark
+    public void updatePullRequestThread() {
+        bot.updatePullRequestThread(thread.getPullRequest(), thread.getComments());
+    }
+}
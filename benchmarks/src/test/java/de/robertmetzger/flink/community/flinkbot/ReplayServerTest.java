@@ -0,0 +1,132 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Records the traffic with a local stub of GitHub and replays it.
+ */
+public class ReplayServerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer origin;
+    private String originUrl;
+    private final AtomicInteger version = new AtomicInteger();
+
+    @Before
+    public void startOrigin() throws IOException {
+        origin = HttpServer.create(new InetSocketAddress(0), 0);
+        origin.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().toString();
+            String body;
+            if(path.startsWith("/graphql")) {
+                body = "{\"query\": \"" + new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8).length() + "\"}";
+            } else {
+                body = "{\"url\": \"" + originUrl + path + "\", \"version\": " + version.incrementAndGet() + "}";
+            }
+            exchange.getResponseHeaders().set("ETag", "\"v" + version.get() + "\"");
+            exchange.getResponseHeaders().set("X-Poll-Interval", "60");
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        origin.start();
+        originUrl = "http://localhost:" + origin.getAddress().getPort();
+    }
+
+    @After
+    public void stopOrigin() {
+        origin.stop(0);
+    }
+
+    @Test
+    public void testRecordAndReplay() throws IOException {
+        File fixtures = new File(tmp.newFolder(), "fixtures.jsonl");
+        OkHttpClient recording = new OkHttpClient.Builder().addInterceptor(new TrafficRecorder(fixtures, originUrl)).build();
+        get(recording, originUrl + "/repos/apache/flink/pulls/1");
+        get(recording, originUrl + "/repos/apache/flink/pulls/1");
+        get(recording, originUrl + "/notifications?all=false");
+        post(recording, originUrl + "/graphql", "{\"cursor\": null}");
+        post(recording, originUrl + "/graphql", "{\"cursor\": \"abc\"}");
+
+        ReplayServer replay = new ReplayServer(fixtures, 0, 2);
+        replay.start();
+        try {
+            OkHttpClient client = new OkHttpClient();
+            String url = replay.getUrl();
+            // the recorded responses in order, then the last one again
+            assertEquals("{\"url\": \"" + url + "/repos/apache/flink/pulls/1\", \"version\": 1}", get(client, url + "/repos/apache/flink/pulls/1").body().string());
+            assertEquals("{\"url\": \"" + url + "/repos/apache/flink/pulls/1\", \"version\": 2}", get(client, url + "/repos/apache/flink/pulls/1").body().string());
+            assertEquals("{\"url\": \"" + url + "/repos/apache/flink/pulls/1\", \"version\": 2}", get(client, url + "/repos/apache/flink/pulls/1").body().string());
+
+            Response notifications = get(client, url + "/notifications?all=false");
+            assertEquals("30", notifications.header("X-Poll-Interval"));
+            assertEquals("\"v3\"", notifications.header("ETag"));
+            notifications.close();
+            Request conditional = new Request.Builder().url(url + "/notifications?all=false").header("If-None-Match", "\"v3\"").build();
+            try (Response response = client.newCall(conditional).execute()) {
+                assertEquals(304, response.code());
+            }
+
+            // GraphQL requests are matched by their query
+            assertEquals("{\"query\": \"17\"}", post(client, url + "/graphql", "{\"cursor\": \"abc\"}"));
+            assertEquals("{\"query\": \"16\"}", post(client, url + "/graphql", "{\"cursor\": null}"));
+
+            assertEquals(404, get(client, url + "/repos/apache/flink/pulls/2").code());
+            assertEquals(8, replay.getRequests());
+            assertEquals(1, replay.getUnmatched());
+        } finally {
+            replay.stop();
+        }
+    }
+
+    private static Response get(OkHttpClient client, String url) throws IOException {
+        Response response = client.newCall(new Request.Builder().url(url).build()).execute();
+        if(response.code() != 200) {
+            response.close();
+        }
+        return response;
+    }
+
+    private static String post(OkHttpClient client, String url, String body) throws IOException {
+        Request request = new Request.Builder().url(url)
+                .post(RequestBody.create(MediaType.parse("application/json"), body)).build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
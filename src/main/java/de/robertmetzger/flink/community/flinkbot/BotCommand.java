@@ -0,0 +1,61 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.List;
+
+/**
+ * A command given to the bot in a comment, such as {@code @flinkbot approve description}.
+ */
+public class BotCommand {
+
+    public enum Type {
+        /** Approve the aspects in the arguments. "approve all" lists all aspects. */
+        APPROVE,
+        /** Remove the approval of the aspects in the arguments. */
+        DISAPPROVE,
+        /** Approve all aspects up to (including) the given one, the arguments list all of them. */
+        APPROVE_UNTIL,
+        /** Require the attention of the "@login"s in the arguments. */
+        ATTENTION
+    }
+
+    private final Type type;
+    private final List<String> arguments;
+
+    public BotCommand(Type type, List<String> arguments) {
+        this.type = type;
+        this.arguments = arguments;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public List<String> getArguments() {
+        return arguments;
+    }
+
+    /**
+     * Applies the command, given by the user with the login, to the review state.
+     */
+    public void applyTo(ReviewState reviewState, String login) {
+        for(String argument: arguments) {
+            switch (type) {
+                case APPROVE:
+                case APPROVE_UNTIL:
+                    reviewState.approve(argument, login);
+                    break;
+                case DISAPPROVE:
+                    reviewState.disapprove(argument, login);
+                    break;
+                case ATTENTION:
+                    reviewState.getAttention().add(argument);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + arguments;
+    }
+}
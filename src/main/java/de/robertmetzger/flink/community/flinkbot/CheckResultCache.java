@@ -0,0 +1,165 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The warnings of the {@link PullRequestCheck}s by pull request, head commit and title. The checks only look at the
+ * changes and the title of a pull request, so a mention which changes neither reuses the warnings of the last run,
+ * instead of fetching the files again and asking Jira.
+ *
+ * Some checks also depend on other services (such as the assignee of a Jira issue), so the results expire after a
+ * while. The cache is seeded from the checks section of the existing tracking comments, see {@link #seed}.
+ */
+public class CheckResultCache {
+
+    private static final Metrics.Counter LOOKUPS = Metrics.counter("flinkbot_check_cache_lookups_total",
+            "Lookups of the results of the automated checks by result: hit or miss.", "result");
+
+    // "Last check on commit <sha> (<date>)"
+    private static final Pattern GET_SHA_PATTERN = Pattern.compile(".* ([a-z0-9]{40}) \\((.*)\\)");
+    private static final String NO_WARNINGS = "✅no warnings";
+    private static final String WARNING_PREFIX = " * ";
+    private static final String UNAVAILABLE_SUFFIX = "check pending/unavailable.";
+
+    private final int capacity;
+    private final long maxAgeMillis;
+    // guarded by this, least recently used first
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param capacity the number of results to keep. With 0, nothing is cached.
+     * @param maxAgeMillis results are not used anymore after this time
+     */
+    public CheckResultCache(int capacity, long maxAgeMillis) {
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAgeMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CheckResultCache.this.capacity;
+            }
+        };
+    }
+
+    public static CheckResultCache disabled() {
+        return new CheckResultCache(0, 0);
+    }
+
+    /**
+     * @return the warnings of the last run of the checks on the head commit and title of the PR, or null
+     */
+    public List<String> get(PullRequestContext context) {
+        if(capacity == 0) {
+            return null;
+        }
+        String key = key(context.getNumber(), context.getHeadSha(), context.getTitle());
+        List<String> warnings = null;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if(entry != null && System.currentTimeMillis() - entry.checkedAt <= maxAgeMillis) {
+                warnings = entry.warnings;
+            } else if(entry != null) {
+                entries.remove(key);
+            }
+        }
+        LOOKUPS.inc(warnings != null ? "hit" : "miss");
+        return warnings;
+    }
+
+    /**
+     * Remembers the warnings of a complete run of the checks, i.e. without checks which were unavailable.
+     */
+    public void put(PullRequestContext context, List<String> warnings) {
+        if(capacity == 0) {
+            return;
+        }
+        put(key(context.getNumber(), context.getHeadSha(), context.getTitle()), warnings, System.currentTimeMillis());
+    }
+
+    /**
+     * Remembers the warnings shown in the checks section of a tracking comment, unless they are too old or some
+     * checks were unavailable.
+     *
+     * @param title the title of the PR the tracking comment has been rendered for
+     * @return whether the comment contained results to remember
+     */
+    public boolean seed(int prID, String title, String trackingComment) {
+        if(capacity == 0 || trackingComment == null) {
+            return false;
+        }
+        String headSha = null;
+        long checkedAt = 0;
+        List<String> warnings = new ArrayList<>();
+        boolean complete = false;
+        for(String line: trackingComment.split("\r?\n")) {
+            if(headSha == null) {
+                Matcher matcher = GET_SHA_PATTERN.matcher(line);
+                if(matcher.matches()) {
+                    headSha = matcher.group(1);
+                    checkedAt = parseDate(matcher.group(2));
+                }
+            } else if(line.contains(NO_WARNINGS)) {
+                complete = warnings.isEmpty();
+                break;
+            } else if(line.startsWith(WARNING_PREFIX)) {
+                warnings.add(line.substring(WARNING_PREFIX.length()));
+                complete = true;
+            } else if(!warnings.isEmpty()) {
+                // end of the warnings
+                break;
+            }
+        }
+        if(!complete || checkedAt == 0 || System.currentTimeMillis() - checkedAt > maxAgeMillis
+                || warnings.stream().anyMatch(warning -> warning.endsWith(UNAVAILABLE_SUFFIX))) {
+            return false;
+        }
+        put(key(prID, headSha, title), warnings, checkedAt);
+        return true;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized void put(String key, List<String> warnings, long checkedAt) {
+        Entry existing = entries.get(key);
+        if(existing == null || existing.checkedAt < checkedAt) {
+            entries.put(key, new Entry(Collections.unmodifiableList(new ArrayList<>(warnings)), checkedAt));
+        }
+    }
+
+    private static String key(int prID, String headSha, String title) {
+        return prID + " " + headSha + " " + Objects.hashCode(title);
+    }
+
+    /**
+     * @return the time of the {@link java.util.Date#toString()} representation, or 0 if it can not be parsed
+     */
+    private static long parseDate(String date) {
+        try {
+            return new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US).parse(date).getTime();
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+
+    private static class Entry {
+        private final List<String> warnings;
+        private final long checkedAt;
+
+        private Entry(List<String> warnings, long checkedAt) {
+            this.warnings = warnings;
+            this.checkedAt = checkedAt;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.kohsuke.github.GHPullRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link PullRequestCheck}s of a pull request concurrently on a bounded pool.
+ *
+ * Every check has to finish within the timeout after it has started running, so that checks waiting for a thread
+ * are not charged for the time they spend queued. A check which does not (or fails) is reported as unavailable,
+ * instead of blocking the update of the tracking comment. The results of complete runs are kept in a
+ * {@link CheckResultCache}.
+ */
+public class CheckRunner {
+    private static Logger LOG = LoggerFactory.getLogger(CheckRunner.class);
+
+    private static final Metrics.Histogram LATENCY = Metrics.histogram("flinkbot_check_duration_seconds",
+            "Duration of the automated checks of a pull request.", "check");
+    private static final Metrics.Counter UNAVAILABLE = Metrics.counter("flinkbot_check_unavailable_total",
+            "Checks which failed or did not finish in time.", "check");
+
+    // how often a queued check is looked at, to start its deadline once it has started
+    private static final long QUEUE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final PullRequestCheck[] checks;
+    private final ThreadPoolExecutor pool;
+    private final long timeoutMillis;
+    private final CheckResultCache resultCache;
+
+    public CheckRunner(PullRequestCheck[] checks, int threads, long timeoutMillis) {
+        this(checks, threads, timeoutMillis, CheckResultCache.disabled());
+    }
+
+    public CheckRunner(PullRequestCheck[] checks, int threads, long timeoutMillis, CheckResultCache resultCache) {
+        this(checks, threads, timeoutMillis, resultCache, ThreadMode.PLATFORM);
+    }
+
+    /**
+     * @param threads the size of the pool. With {@link ThreadMode#VIRTUAL}, every check runs on its own thread.
+     */
+    public CheckRunner(PullRequestCheck[] checks, int threads, long timeoutMillis, CheckResultCache resultCache, ThreadMode threadMode) {
+        this.checks = checks;
+        this.timeoutMillis = timeoutMillis;
+        this.resultCache = resultCache;
+        AtomicInteger threadCount = new AtomicInteger();
+        if(threadMode == ThreadMode.VIRTUAL) {
+            this.pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    r -> threadMode.newThread("Check runner " + threadCount.getAndIncrement(), r));
+        } else {
+            this.pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> threadMode.newThread("Check runner " + threadCount.getAndIncrement(), r));
+            pool.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Number of checks waiting for a thread.
+     */
+    public int getQueueSize() {
+        return pool.getQueue().size();
+    }
+
+    public CheckResultCache getResultCache() {
+        return resultCache;
+    }
+
+    public void prefetch(List<GHPullRequest> pullRequests) {
+        for(PullRequestCheck check: checks) {
+            try {
+                check.prefetch(pullRequests);
+            } catch (Throwable t) {
+                LOG.warn("Error while prefetching for " + check.getClass().getSimpleName(), t);
+            }
+        }
+    }
+
+    /**
+     * @return the warnings of all checks, in the order of the checks. Cached, if the checks ran on the same head
+     * commit and title before.
+     */
+    public List<String> runChecks(PullRequestContext context) {
+        List<String> cached = resultCache.get(context);
+        if(cached != null) {
+            LOG.debug("Reusing the results of the checks on PR #{}", context.getNumber());
+            return cached;
+        }
+        List<TimedCheck> results = new ArrayList<>(checks.length);
+        for(PullRequestCheck check: checks) {
+            TimedCheck timed = new TimedCheck(check, context);
+            timed.result = pool.submit(RateLimitScheduler.withCurrentPriority(timed));
+            results.add(timed);
+        }
+
+        // a check which is queued behind the checks of other PRs does not wait forever
+        long queueDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) * (checks.length + 1);
+        List<String> warnings = new ArrayList<>();
+        boolean complete = true;
+        for(int i = 0; i < checks.length; i++) {
+            String checkName = checks[i].getClass().getSimpleName();
+            TimedCheck timed = results.get(i);
+            Future<String> result = timed.result;
+            try {
+                String warning = timed.await(queueDeadline);
+                if(warning != null) {
+                    warnings.add(warning);
+                }
+            } catch (TimeoutException e) {
+                LOG.warn("{} did not finish within {} ms on PR #{}", checkName, timeoutMillis, context.getNumber());
+                result.cancel(true);
+                warnings.add(unavailable(checkName));
+                complete = false;
+            } catch (ExecutionException e) {
+                LOG.warn("Error while running " + checkName + " on PR #" + context.getNumber(), e.getCause());
+                warnings.add(unavailable(checkName));
+                complete = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.cancel(true);
+                warnings.add(unavailable(checkName));
+                complete = false;
+            }
+        }
+        if(complete) {
+            resultCache.put(context, warnings);
+        }
+        return warnings;
+    }
+
+    /**
+     * A check whose deadline starts when it gets a thread, not when it is submitted.
+     */
+    private class TimedCheck implements Callable<String> {
+        private final PullRequestCheck check;
+        private final PullRequestContext context;
+        private Future<String> result;
+        // System.nanoTime() when the check started running, 0 while it is queued
+        private volatile long startedAt;
+
+        TimedCheck(PullRequestCheck check, PullRequestContext context) {
+            this.check = check;
+            this.context = context;
+        }
+
+        @Override
+        public String call() throws Exception {
+            long start = System.nanoTime();
+            startedAt = start == 0 ? 1 : start;
+            try {
+                return check.runCheck(context);
+            } finally {
+                LATENCY.observeSince(start, check.getClass().getSimpleName());
+            }
+        }
+
+        /**
+         * Waits for the check to finish within the timeout after it has started.
+         *
+         * @param queueDeadline the check has to start before this time
+         */
+        String await(long queueDeadline) throws InterruptedException, ExecutionException, TimeoutException {
+            long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            while(true) {
+                long started = startedAt;
+                long deadline = started != 0 ? started + timeoutNanos : Math.min(queueDeadline, System.nanoTime() + QUEUE_POLL_NANOS);
+                try {
+                    return result.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if(started != 0 || System.nanoTime() - queueDeadline >= 0) {
+                        throw e;
+                    }
+                    // still queued, or has started meanwhile
+                }
+            }
+        }
+    }
+
+    private static String unavailable(String checkName) {
+        UNAVAILABLE.inc(checkName);
+        return "`" + checkName + "` check pending/unavailable.";
+    }
+}
@@ -0,0 +1,127 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The collaborators of the served repositories, by login.
+ *
+ * The collaborators of a repository are loaded on the first lookup and reloaded once they are older than the time
+ * to live. Lookups of different repositories, and lookups while a repository is being reloaded by another thread, do
+ * not wait for each other. If reloading fails, the previous collaborators are used for a while longer.
+ */
+public class CollaboratorIndex {
+    private static Logger LOG = LoggerFactory.getLogger(CollaboratorIndex.class);
+
+    private static final Metrics.Counter LOADS = Metrics.counter("flinkbot_collaborator_loads_total",
+            "Loads of the collaborators of a repository by result: ok or failed.", "result");
+
+    // after a failed reload, the previous collaborators are used for this long
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    public interface Loader {
+        /**
+         * @return the logins of the collaborators of the repository ("owner/name")
+         */
+        Collection<String> load(String repository) throws IOException;
+    }
+
+    private final Loader loader;
+    private final long ttlMillis;
+    private final Map<String, Collaborators> repositories = new ConcurrentHashMap<>();
+
+    public CollaboratorIndex(Loader loader, long ttlMillis) {
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @return the login of the collaborator with the given login (ignoring the case), or null if the user is not a
+     * collaborator of the repository
+     */
+    public String get(String repository, String login) throws IOException {
+        return repositories.computeIfAbsent(repository.toLowerCase(Locale.ROOT), key -> new Collaborators(repository))
+                .get(login.toLowerCase(Locale.ROOT));
+    }
+
+    private class Collaborators {
+        private final String repository;
+        private final ReentrantLock loading = new ReentrantLock();
+        // lower case login -> login, replaced as a whole
+        private volatile Map<String, String> logins;
+        private volatile long expiresAt;
+
+        Collaborators(String repository) {
+            this.repository = repository;
+        }
+
+        String get(String login) throws IOException {
+            Map<String, String> current = logins;
+            if(current == null) {
+                current = load();
+            } else if(System.currentTimeMillis() >= expiresAt && loading.tryLock()) {
+                // one thread reloads, the others use the previous collaborators meanwhile
+                try {
+                    current = reload(current);
+                } finally {
+                    loading.unlock();
+                }
+            }
+            return current.get(login);
+        }
+
+        private Map<String, String> load() throws IOException {
+            loading.lock();
+            try {
+                if(logins == null) {
+                    logins = fetch();
+                }
+                return logins;
+            } finally {
+                loading.unlock();
+            }
+        }
+
+        private Map<String, String> reload(Map<String, String> previous) {
+            if(System.currentTimeMillis() < expiresAt) {
+                // reloaded by another thread meanwhile
+                return logins;
+            }
+            try {
+                logins = fetch();
+            } catch (IOException e) {
+                LOG.warn("Unable to reload the collaborators of {}, using the previous ones", repository, e);
+                expiresAt = System.currentTimeMillis() + Math.min(ttlMillis, RETRY_MILLIS);
+                return previous;
+            }
+            return logins;
+        }
+
+        private Map<String, String> fetch() throws IOException {
+            Collection<String> loaded;
+            try {
+                loaded = loader.load(repository);
+            } catch (IOException e) {
+                LOADS.inc("failed");
+                throw e;
+            }
+            LOADS.inc("ok");
+            Map<String, String> result = new HashMap<>();
+            for(String login: loaded) {
+                result.put(login.toLowerCase(Locale.ROOT), login);
+            }
+            expiresAt = System.currentTimeMillis() + ttlMillis;
+            LOG.info("Loaded {} collaborators of {}", result.size(), repository);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Finds the bot commands in a comment body.
+ *
+ * A command starts with a mention of the bot, followed by the action and its arguments, separated by single
+ * spaces, in the same line. The characters {@code ,.!?} are ignored. Further mentions in the same line start
+ * further commands. The body is scanned once: only lines mentioning the bot are tokenized, and tokens are only
+ * copied into strings where they make up a command.
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class CommandParser {
+    private static Logger LOG = LoggerFactory.getLogger(CommandParser.class);
+
+    private final String botName;
+    // order matters
+    private final List<String> aspects;
+    private final Map<String, Integer> aspectIndex = new HashMap<>();
+
+    /**
+     * @param botName the mention of the bot, including the "@"
+     * @param aspects the aspects which can be approved, in review order
+     */
+    public CommandParser(String botName, String[] aspects) {
+        this.botName = botName;
+        this.aspects = Collections.unmodifiableList(Arrays.asList(aspects.clone()));
+        for(int i = 0; i < aspects.length; i++) {
+            aspectIndex.put(aspects[i], i);
+        }
+    }
+
+    /**
+     * Passes the commands of the body to the consumer, in the order they appear.
+     *
+     * @throws IllegalArgumentException if an attention command has no argument. Commands after it are not parsed.
+     */
+    public void parse(String body, Consumer<BotCommand> commands) {
+        Tokens tokens = null;
+        int length = body.length();
+        int lineStart = 0;
+        while (lineStart < length) {
+            int mention = body.indexOf(botName, lineStart);
+            if(mention < 0) {
+                return;
+            }
+            // skip the lines without a mention
+            lineStart = Math.max(lineStart, body.lastIndexOf('\n', mention) + 1);
+            int lineEnd = body.indexOf('\n', mention);
+            if(lineEnd < 0) {
+                lineEnd = length;
+            }
+            if(tokens == null) {
+                tokens = new Tokens(body);
+            }
+            tokens.tokenize(lineStart, lineEnd);
+            parseLine(tokens, commands);
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    private void parseLine(Tokens tokens, Consumer<BotCommand> commands) {
+        int count = tokens.count;
+        for(int i = 0; i < count; i++) {
+            if(!tokens.equals(i, botName)) {
+                continue;
+            }
+            if(i + 2 >= count) {
+                LOG.debug("Incomplete command in: {}", tokens);
+                return; // stop processing this line
+            }
+            String action = tokens.get(i + 1).toLowerCase().trim();
+            String argument = tokens.get(i + 2).toLowerCase().trim();
+            List<String> arguments = new ArrayList<>();
+            switch (action) {
+                case "attention":
+                    if(argument.isEmpty()) {
+                        throw new IllegalArgumentException("Attention command without a user in: " + tokens);
+                    }
+                    if(argument.charAt(0) == '@') {
+                        arguments.add(argument);
+                    }
+                    // look for more names
+                    for(int j = i + 3; j < count; j++) {
+                        String user = tokens.get(j);
+                        if(user.length() > 1 && user.charAt(0) == '@') {
+                            arguments.add(user.trim());
+                        }
+                    }
+                    commands.accept(new BotCommand(BotCommand.Type.ATTENTION, arguments));
+                    break;
+                case "approve":
+                case "disapprove":
+                    if(argument.equals("all")) {
+                        arguments.addAll(aspects);
+                    } else if(aspectIndex.containsKey(argument)) {
+                        arguments.add(argument);
+                        // additional aspects, which are not normalized
+                        for(int j = i + 3; j < count; j++) {
+                            String aspect = tokens.get(j);
+                            if(aspectIndex.containsKey(aspect)) {
+                                arguments.add(aspect);
+                            }
+                        }
+                    } else {
+                        LOG.debug("Invalid approval/aspect in {}", tokens);
+                        return;
+                    }
+                    commands.accept(new BotCommand(action.equals("approve") ? BotCommand.Type.APPROVE : BotCommand.Type.DISAPPROVE, arguments));
+                    break;
+                case "approve-until":
+                    Integer until = aspectIndex.get(argument);
+                    if(until == null) {
+                        LOG.debug("Invalid approval {} in '{}'", argument, tokens);
+                        return;
+                    }
+                    arguments.addAll(aspects.subList(0, until + 1));
+                    commands.accept(new BotCommand(BotCommand.Type.APPROVE_UNTIL, arguments));
+                    break;
+                default:
+                    LOG.debug("Incomplete command in: {}", tokens);
+                    return; // stop processing this line
+            }
+        }
+    }
+
+    private static boolean isIgnored(char c) {
+        return c == ',' || c == '.' || c == '!' || c == '?';
+    }
+
+    /**
+     * The space separated tokens of a line, as positions in the body. Ignored characters are skipped when reading
+     * a token, tokens consisting only of them are empty. Empty tokens at the end of the line are dropped.
+     */
+    private static class Tokens {
+        private final String body;
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int count;
+        private int lineStart;
+        private int lineEnd;
+
+        Tokens(String body) {
+            this.body = body;
+        }
+
+        void tokenize(int lineStart, int lineEnd) {
+            this.lineStart = lineStart;
+            this.lineEnd = lineEnd;
+            count = 0;
+            int nonEmptyCount = 0;
+            int start = lineStart;
+            for(int pos = lineStart; pos <= lineEnd; pos++) {
+                if(pos == lineEnd || body.charAt(pos) == ' ') {
+                    if(count == starts.length) {
+                        starts = Arrays.copyOf(starts, count * 2);
+                        ends = Arrays.copyOf(ends, count * 2);
+                    }
+                    starts[count] = start;
+                    ends[count] = pos;
+                    count++;
+                    if(length(count - 1) > 0) {
+                        nonEmptyCount = count;
+                    }
+                    start = pos + 1;
+                }
+            }
+            count = nonEmptyCount;
+        }
+
+        private int length(int token) {
+            int length = 0;
+            for(int pos = starts[token]; pos < ends[token]; pos++) {
+                if(!isIgnored(body.charAt(pos))) {
+                    length++;
+                }
+            }
+            return length;
+        }
+
+        boolean equals(int token, String value) {
+            int index = 0;
+            for(int pos = starts[token]; pos < ends[token]; pos++) {
+                char c = body.charAt(pos);
+                if(isIgnored(c)) {
+                    continue;
+                }
+                if(index == value.length() || value.charAt(index) != c) {
+                    return false;
+                }
+                index++;
+            }
+            return index == value.length();
+        }
+
+        String get(int token) {
+            int start = starts[token];
+            int end = ends[token];
+            for(int pos = start; pos < end; pos++) {
+                if(isIgnored(body.charAt(pos))) {
+                    StringBuilder sb = new StringBuilder(end - start);
+                    for(int p = start; p < end; p++) {
+                        if(!isIgnored(body.charAt(p))) {
+                            sb.append(body.charAt(p));
+                        }
+                    }
+                    return sb.toString();
+                }
+            }
+            return body.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return body.substring(lineStart, lineEnd);
+        }
+    }
+}
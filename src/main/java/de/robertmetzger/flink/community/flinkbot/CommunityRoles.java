@@ -0,0 +1,85 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable index of the community role of the committers and PMC members, by their "@login".
+ */
+public class CommunityRoles {
+
+    public enum Role {
+        COMMITTER(" [committer]"),
+        PMC(" [PMC]");
+
+        private final String suffix;
+
+        Role(String suffix) {
+            this.suffix = suffix;
+        }
+    }
+
+    private final Map<String, Role> roles;
+
+    private CommunityRoles(Map<String, Role> roles) {
+        this.roles = Collections.unmodifiableMap(roles);
+    }
+
+    /**
+     * @param committers logins of the committers, without "@"
+     * @param pmc logins of the PMC members, without "@". Users listed in both are shown as committers.
+     */
+    public static CommunityRoles of(String[] committers, String[] pmc) {
+        Map<String, Role> roles = new HashMap<>();
+        if(pmc != null) {
+            for(String login: pmc) {
+                roles.put("@" + login, Role.PMC);
+            }
+        }
+        if(committers != null) {
+            for(String login: committers) {
+                roles.put("@" + login, Role.COMMITTER);
+            }
+        }
+        return new CommunityRoles(roles);
+    }
+
+    /**
+     * @return the role of the "@login", or null for contributors
+     */
+    public Role getRole(String login) {
+        return roles.get(login);
+    }
+
+    public boolean isCommitterOrPmc(String login) {
+        return roles.containsKey(login);
+    }
+
+    /**
+     * Appends the role to the "@login", e.g. "@rmetzger [PMC]".
+     */
+    public String withRole(String login) {
+        Role role = roles.get(login);
+        return role == null ? login : login + role.suffix;
+    }
+
+    public int size() {
+        return roles.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CommunityRoles && roles.equals(((CommunityRoles) o).roles);
+    }
+
+    @Override
+    public int hashCode() {
+        // stable between runs (unlike the hash of an enum), as it is part of persisted fingerprints
+        int hash = 0;
+        for(Map.Entry<String, Role> role: roles.entrySet()) {
+            hash += role.getKey().hashCode() ^ role.getValue().name().hashCode();
+        }
+        return hash;
+    }
+}
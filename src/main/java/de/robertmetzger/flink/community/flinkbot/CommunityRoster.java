@@ -0,0 +1,115 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Provides the current {@link CommunityRoles}. The roles are either fixed, or loaded from a roster file which is
+ * reloaded when it changes on disk, so that new committers don't require a restart of the bot.
+ *
+ * The roster file is a properties file with the comma separated logins in "committers" and "pmc".
+ */
+public class CommunityRoster {
+    private static Logger LOG = LoggerFactory.getLogger(CommunityRoster.class);
+
+    private final File file;
+    private final ReentrantLock reloadLock = new ReentrantLock();
+    private volatile CommunityRoles roles;
+    private long lastModified;
+    private long length;
+
+    private CommunityRoster(File file, CommunityRoles roles) {
+        this.file = file;
+        this.roles = roles;
+    }
+
+    public static CommunityRoster fixed(String[] committers, String[] pmc) {
+        return new CommunityRoster(null, CommunityRoles.of(committers, pmc));
+    }
+
+    /**
+     * Loads the roster from the file.
+     *
+     * @throws IOException if the file can not be read
+     */
+    public static CommunityRoster fromFile(File file) throws IOException {
+        CommunityRoster roster = new CommunityRoster(file, null);
+        if(!roster.reload()) {
+            throw new IOException("Unable to load roster file " + file);
+        }
+        return roster;
+    }
+
+    public CommunityRoles getRoles() {
+        return roles;
+    }
+
+    /**
+     * Checks the roster file for changes on the executor, in the given interval.
+     */
+    public void watch(ScheduledExecutorService executor, long interval, TimeUnit unit) {
+        if(file == null) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                if(file.lastModified() != lastModified || file.length() != length) {
+                    reload();
+                }
+            } catch (Throwable t) {
+                LOG.warn("Error while checking roster file " + file, t);
+            }
+        }, interval, interval, unit);
+    }
+
+    /**
+     * Reads the roster file and swaps the roles. The previous roles are kept if the file can not be read.
+     *
+     * @return whether the roles have been loaded
+     */
+    boolean reload() {
+        reloadLock.lock();
+        try {
+            long modified = file.lastModified();
+            long size = file.length();
+            Properties roster = new Properties();
+            try (InputStream in = new FileInputStream(file)) {
+                roster.load(in);
+            } catch (IOException e) {
+                LOG.warn("Unable to read roster file " + file, e);
+                return false;
+            }
+            CommunityRoles loaded = CommunityRoles.of(split(roster.getProperty("committers")), split(roster.getProperty("pmc")));
+            lastModified = modified;
+            length = size;
+            if(!loaded.equals(roles)) {
+                LOG.info("Loaded {} committers and PMC members from {}", loaded.size(), file);
+                roles = loaded;
+            }
+            return true;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    private static String[] split(String logins) {
+        String[] split = StringUtils.split(logins, ',');
+        if(split == null) {
+            return new String[0];
+        }
+        for(int i = 0; i < split.length; i++) {
+            split[i] = split[i].trim();
+        }
+        return split;
+    }
+}
@@ -3,8 +3,6 @@ package de.robertmetzger.flink.community.flinkbot;
 import de.robertmetzger.flink.community.flinkbot.checks.AssignedJiraCheck;
 import de.robertmetzger.flink.community.flinkbot.checks.DocumentationCheck;
 import de.robertmetzger.flink.community.flinkbot.checks.PomChangesCheck;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.StringUtils;
 import org.kohsuke.github.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,6 +11,10 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -22,16 +24,33 @@ public class Flinkbot {
 
     private final String botName;
     private final String trackingMessage;
+    private final TrackingCommentTemplate trackingTemplate;
 
     // order matters
     private static final String[] VALID_APPROVALS = {"description", "consensus", "architecture", "quality"};
 
-    private static final Pattern GET_SHA_PATTERN = Pattern.compile(".* ([a-z0-9]{40}) \\(.*\\)");
-
-    private static final PullRequestCheck[] PULL_REQUEST_CHECK = {
+    static final PullRequestCheck[] PULL_REQUEST_CHECK = {
         new PomChangesCheck(), new DocumentationCheck(), new AssignedJiraCheck()
     };
 
+    private static final Metrics.Histogram SCAN_DURATION = Metrics.histogram("flinkbot_scan_duration_seconds",
+            "Duration of a scan for new pull requests.");
+    private static final Metrics.Histogram COMMENT_UPDATE_DURATION = Metrics.histogram("flinkbot_comment_update_duration_seconds",
+            "Duration of writing a tracking comment.");
+    private static final Metrics.Counter COMMENT_UPDATES_SKIPPED = Metrics.counter("flinkbot_comment_updates_skipped_total",
+            "Updates of a tracking comment which have been skipped, because its content did not change.");
+    private static final Metrics.Counter MENTIONS = Metrics.counter("flinkbot_mentions_total",
+            "Mentions of the bot (notifications and webhooks) which have been accepted for processing.");
+    private static final Metrics.Counter SCANNED = Metrics.counter("flinkbot_scanned_pull_requests_total",
+            "Open pull requests looked at by the scans for new pull requests.");
+    private static final Metrics.Histogram UPDATE_DURATION = Metrics.histogram("flinkbot_pull_request_update_duration_seconds",
+            "Duration of processing the comments of a pull request, without the delayed write.");
+    private static final Metrics.Counter JOURNAL_REPLAYED = Metrics.counter("flinkbot_journal_replayed_total",
+            "Updates of pull requests which have been accepted, but not finished before the last shutdown.");
+
+    // an unfinished update which failed after this many replays is given up
+    private static final int MAX_REPLAYS = 3;
+
     private static final String LABEL_PREFIX = "review=";
     private static final String LABEL_COLOR = "bcf5db";
     
@@ -44,22 +63,77 @@ public class Flinkbot {
                                             };
 
     private final Github gh;
-    private final String[] committers;
-    private final String[] pmc;
-    // cache repo collaborators
-    private Map<String, GHPersonSet<GHUser>> repoCollaborators;
+    private final CommunityRoster roster;
+    private final PullRequestStateStore stateStore;
+    // updates of the same PR are processed one after another
+    private final StripedExecutor pullRequestExecutor;
+    private final CheckRunner checkRunner;
+    // writes of the tracking comment and label
+    private final WriteBehind writeBehind;
+    // accepted updates, until their writes are done
+    private final WorkJournal journal;
+    private final LabelCatalog labelCatalog;
+    private final CommandParser commandParser;
+    // scans for new PRs run one after another
+    private final ReentrantLock scanLock = new ReentrantLock();
+    // a new PR gets exactly one tracking comment, whether it is found by a scan or by checkNewPR()
+    private final ReentrantLock[] newPRLocks = new ReentrantLock[64];
 
 
     public Flinkbot(Github gh, String[] committers, String[] pmc) {
+        this(gh, committers, pmc, PullRequestStateStore.inMemory());
+    }
+
+    public Flinkbot(Github gh, String[] committers, String[] pmc, PullRequestStateStore stateStore) {
+        this(gh, committers, pmc, stateStore, new StripedExecutor("Pull request processor", 1),
+                new CheckRunner(PULL_REQUEST_CHECK, PULL_REQUEST_CHECK.length, 30_000));
+    }
+
+    public Flinkbot(Github gh, String[] committers, String[] pmc, PullRequestStateStore stateStore,
+                    StripedExecutor pullRequestExecutor, CheckRunner checkRunner) {
+        this(gh, CommunityRoster.fixed(committers, pmc), stateStore, pullRequestExecutor, checkRunner);
+    }
+
+    public Flinkbot(Github gh, CommunityRoster roster, PullRequestStateStore stateStore,
+                    StripedExecutor pullRequestExecutor, CheckRunner checkRunner) {
+        this(gh, roster, stateStore, pullRequestExecutor, checkRunner, 0);
+    }
+
+    /**
+     * @param writeDelayMillis the updates of a PR within this time are coalesced into a single write of the tracking
+     *                         comment and label. With 0, every update is written immediately.
+     */
+    public Flinkbot(Github gh, CommunityRoster roster, PullRequestStateStore stateStore,
+                    StripedExecutor pullRequestExecutor, CheckRunner checkRunner, long writeDelayMillis) {
+        this(gh, roster, stateStore, pullRequestExecutor, checkRunner, writeDelayMillis, WorkJournal.disabled());
+    }
+
+    /**
+     * @param journal records the accepted updates of PRs, see {@link #replayJournal()}
+     */
+    public Flinkbot(Github gh, CommunityRoster roster, PullRequestStateStore stateStore,
+                    StripedExecutor pullRequestExecutor, CheckRunner checkRunner, long writeDelayMillis, WorkJournal journal) {
         this.gh = gh;
+        this.journal = journal;
+        // delayed writes are executed in the lane of the PR
+        this.writeBehind = new WriteBehind(writeDelayMillis, (prID, write) -> pullRequestExecutor.execute(lane(prID), write));
+        this.roster = roster;
+        this.stateStore = stateStore;
+        this.pullRequestExecutor = pullRequestExecutor;
+        this.checkRunner = checkRunner;
+        this.labelCatalog = new LabelCatalog(gh, LABEL_PREFIX, LABEL_COLOR);
+        for(int i = 0; i < newPRLocks.length; i++) {
+            newPRLocks[i] = new ReentrantLock();
+        }
         this.botName = "@"+gh.getBotName();
+        this.commandParser = new CommandParser(botName, VALID_APPROVALS);
         this.trackingMessage = "Thanks a lot for your contribution to the Apache Flink project. I'm the "+ botName +". I help the community\n" +
                 "to review your pull request. We will use this comment to track the progress of the review.\n" +
                 "\n" +
                 "\n" +
                 "## Automated Checks" +
                 "\n" +
-                "##CHECKS PLACEHOLDER##" +
+                TrackingCommentTemplate.CHECKS_PLACEHOLDER +
                 "\n" +
                 "## Review Progress\n" +
                 "\n" +
@@ -83,112 +157,547 @@ public class Flinkbot {
                 " - `"+ botName +" attention @username1 [@username2 ..]` to require somebody's attention\n" +
                 " - `"+ botName +" disapprove architecture` to remove an approval you gave earlier\n" +
                 "</details>";
-
-        this.committers = committers;
-        this.pmc = pmc;
+        this.trackingTemplate = new TrackingCommentTemplate(trackingMessage, VALID_APPROVALS, login -> roster.getRoles().withRole(login));
     }
 
     /**
      * Check if there are new pull requests w/o a managed comment yet.
      *  Create comment
      *
-     * The method is synchronized, to avoid multiple threads concurrently processing new PRs.
+     * PRs which are already known to the state store are skipped without looking at their comments.
+     *
+     * The check is skipped while the rate limit is low, and stops early if it runs low during the check. The
+     * remaining PRs are checked in the next cycle.
      */
-    public synchronized void checkForNewPRs() {
-        List<GHPullRequest> prs = gh.getAllPullRequests();
-        // remove all PRs we've commented on already
-        prs.removeIf(pr -> {
-            // LOG.debug("Checking PR " + pullToSimpleString(pr));
-            return pullRequestHasComment(pr);
-        });
+    public void checkForNewPRs() {
+        // decided before waiting for a running check, so that a low budget never keeps the caller's thread
+        if(gh.isBackgroundDeferred()) {
+            LOG.info("Rate limit low, skipping the check for new PRs. Requests remaining: " + gh.getRemainingRequests());
+            return;
+        }
+        // avoid multiple threads concurrently processing new PRs
+        scanLock.lock();
+        try {
+            scanForNewPRs();
+        } finally {
+            scanLock.unlock();
+        }
+    }
+
+    private void scanForNewPRs() {
+        long start = System.nanoTime();
+        List<GHPullRequest> prs = gh.hasPullRequestSnapshots() ? findNewPRsFromSnapshots() : null;
+        if(prs == null) {
+            prs = findNewPRs();
+        }
+        if(prs == null) {
+            // keep the known PRs, and try again in the next cycle
+            return;
+        }
+
+        if(prs.size() > 1) {
+            checkRunner.prefetch(prs);
+        }
 
         // put comment
         for (GHPullRequest pr : prs) {
-            LOG.info("Commenting with tracking message on PR " + pullToSimpleString(pr));
+            if(gh.isBackgroundDeferred()) {
+                LOG.info("Rate limit low, deferring the remaining new PRs to the next check");
+                break;
+            }
+            // in the lane of the PR, so that the writes are ordered with the other updates of the PR
+            Future<?> posted = pullRequestExecutor.submit(lane(pr.getNumber()), RateLimitScheduler.withCurrentPriority(() -> {
+                postNewTrackingComment(pr);
+                return null;
+            }));
+            try {
+                posted.get();
+            } catch (ExecutionException e) {
+                LOG.warn("Error while posting the tracking comment on PR " + pullToSimpleString(pr), e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        stateStore.flush();
+        SCAN_DURATION.observeSince(start);
+        LOG.info("Done checking for new PRs. Tracking " + stateStore.size() + " PRs. Requests remaining: " + gh.getRemainingRequests() +" Write requests " + gh.getRemainingWriteRequests());
+    }
+
+    /**
+     * Lists the open PRs and looks for the tracking comment in the comments of the PRs which are not known yet.
+     *
+     * @return the PRs without a tracking comment, or null if the open PRs could not be listed
+     */
+    private List<GHPullRequest> findNewPRs() {
+        List<GHPullRequest> prs;
+        try {
+            prs = gh.getAllPullRequests();
+        } catch (IOException e) {
+            LOG.warn("Unable to list the open pull requests, skipping this check", e);
+            return null;
+        }
+        SCANNED.add(prs.size());
+        // forget about closed PRs
+        stateStore.retainAll(prs.stream().map(GHPullRequest::getNumber).collect(Collectors.toSet()));
+
+        // remove all PRs we've commented on already
+        List<GHPullRequest> newPRs = new ArrayList<>();
+        for(GHPullRequest pr: prs) {
+            if(stateStore.contains(pr.getNumber())) {
+                continue;
+            }
+            if(gh.isBackgroundDeferred()) {
+                // the PRs which have not been looked at are not known to be new
+                LOG.info("Rate limit low, deferring the remaining PRs to the next check");
+                break;
+            }
+            // LOG.debug("Checking PR " + pullToSimpleString(pr));
             try {
-                String customTracking = trackingMessage.replace("##CHECKS PLACEHOLDER##", generateWarningsSection(pr, new ArrayList<>()));
-                pr.comment(customTracking);
-                // add label
-                updateLabels(Collections.EMPTY_MAP, pr.getNumber());
+                GHIssueComment trackingComment = findTrackingComment(pr);
+                if(trackingComment != null) {
+                    rememberTrackingComment(pr.getNumber(), pr, trackingComment);
+                } else {
+                    newPRs.add(pr);
+                }
             } catch (IOException e) {
-                LOG.warn("Error writing tracking message", e);
+                LOG.warn("Error checking for the tracking comment on PR " + pullToSimpleString(pr), e);
             }
         }
-        LOG.info("Done checking for new PRs. Requests remaining: " + gh.getRemainingRequests() +" Write requests " + gh.getRemainingWriteRequests());
+        return newPRs;
     }
 
-    private boolean pullRequestHasComment(GHPullRequest pr) {
+    /**
+     * Like {@link #findNewPRs()}, but with the snapshots of all open PRs from a few GraphQL requests. Only the PRs
+     * without a tracking comment (or too many comments to tell) are fetched individually.
+     *
+     * @return the PRs without a tracking comment, or null if the snapshots are not available
+     */
+    private List<GHPullRequest> findNewPRsFromSnapshots() {
+        List<PullRequestSnapshot> snapshots;
         try {
-            return pr.getComments().stream().anyMatch(comment -> {
-                // call getUserName() to avoid an additional API request
-                if (comment.getUserName().equals(gh.getBotName())) {
-                    // Check if message is the same.
-                    String body = comment.getBody();
-                    return isTrackingMessage(body);
+            snapshots = gh.getPullRequestSnapshots();
+        } catch (IOException e) {
+            LOG.warn("Unable to get the snapshots of the open pull requests, listing them instead", e);
+            return null;
+        }
+        SCANNED.add(snapshots.size());
+        // forget about closed PRs
+        stateStore.retainAll(snapshots.stream().map(PullRequestSnapshot::getNumber).collect(Collectors.toSet()));
+
+        List<GHPullRequest> prs = new ArrayList<>();
+        for(PullRequestSnapshot snapshot: snapshots) {
+            int prID = snapshot.getNumber();
+            if(stateStore.contains(prID)) {
+                continue;
+            }
+            ThreadComment tracking = snapshot.getBotComments().stream()
+                    .filter(comment -> isTrackingMessage(comment.getBody())).findFirst().orElse(null);
+            if(tracking != null) {
+                stateStore.update(prID, state -> {
+                    state.setTrackingCommentId(tracking.getId());
+                    state.setHeadSha(snapshot.getHeadSha());
+                    state.setLabel(reviewLabel(snapshot.getLabels()));
+                });
+                continue;
+            }
+            try {
+                GHPullRequest pr = gh.getPullRequest(prID);
+                if(!snapshot.isAllCommentsFetched()) {
+                    GHIssueComment trackingComment = findTrackingComment(pr);
+                    if(trackingComment != null) {
+                        rememberTrackingComment(prID, pr, trackingComment);
+                        continue;
+                    }
                 }
-                return false;
+                prs.add(pr);
+            } catch (IOException e) {
+                LOG.warn("Unable to get PR #" + prID, e);
+            }
+        }
+        return prs;
+    }
+
+    /**
+     * @return the review label among the labels, or null if there is none (or more than one)
+     */
+    private static String reviewLabel(List<String> labels) {
+        List<String> reviewLabels = labels.stream().filter(label -> label.startsWith(LABEL_PREFIX)).collect(Collectors.toList());
+        return reviewLabels.size() == 1 ? reviewLabels.get(0) : null;
+    }
+
+    /**
+     * Puts the tracking comment on a single (newly opened) PR, unless it already has one.
+     *
+     * Only the PR is locked, not the bot, so that a running scan does not hold up the lane of the PR.
+     */
+    public void checkNewPR(int prID) throws IOException {
+        if(stateStore.contains(prID)) {
+            return;
+        }
+        ReentrantLock lock = newPRLock(prID);
+        lock.lock();
+        try {
+            if(stateStore.contains(prID)) {
+                return;
+            }
+            GHPullRequest pr = gh.getPullRequest(prID);
+            GHIssueComment trackingComment = findTrackingComment(pr);
+            if(trackingComment != null) {
+                rememberTrackingComment(prID, pr, trackingComment);
+            } else {
+                postTrackingComment(pr);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts the tracking comment on a PR found by a scan, unless {@link #checkNewPR(int)} has been faster.
+     */
+    private void postNewTrackingComment(GHPullRequest pr) {
+        ReentrantLock lock = newPRLock(pr.getNumber());
+        lock.lock();
+        try {
+            if(!stateStore.contains(pr.getNumber())) {
+                postTrackingComment(pr);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock newPRLock(int prID) {
+        return newPRLocks[Math.floorMod(prID, newPRLocks.length)];
+    }
+
+    /**
+     * Schedules {@link #checkNewPR(int)} in the lane of the PR, so that the caller does not wait for a running scan.
+     */
+    public void scheduleNewPRCheck(int prID) {
+        pullRequestExecutor.execute(lane(prID), () -> {
+            try {
+                checkNewPR(prID);
+            } catch (IOException e) {
+                LOG.warn("Unable to check new PR #" + prID, e);
+            }
+        });
+    }
+
+    private void postTrackingComment(GHPullRequest pr) {
+        LOG.info("Commenting with tracking message on PR " + pullToSimpleString(pr));
+        try {
+            PullRequestContext context = new PullRequestContext(pr, new ArrayList<>());
+            List<String> warnings = checkRunner.runChecks(context);
+            ReviewState reviewState = new ReviewState();
+            String body = trackingTemplate.render(reviewState, renderChecksSection(context.getHeadSha(), warnings));
+            // the writes are not deferred, once the checks ran
+            GHIssueComment trackingComment = RateLimitScheduler.runInteractive(() -> pr.comment(body));
+            rememberTrackingComment(pr.getNumber(), pr, trackingComment);
+            int fingerprint = fingerprint(reviewState, context.getHeadSha(), warnings);
+            stateStore.update(pr.getNumber(), state -> {
+                state.setRenderedFingerprint(fingerprint);
+                state.setRenderedTitleHash(Objects.hashCode(context.getTitle()));
+            });
+            // add label
+            RateLimitScheduler.runInteractive(() -> {
+                updateLabels(Collections.EMPTY_MAP, pr.getNumber(), pr);
+                return null;
             });
         } catch (IOException e) {
-            LOG.warn("Error checking for comment", e);
+            LOG.warn("Error writing tracking message", e);
+        }
+    }
+
+    /**
+     * @throws IOException if the comments could not be listed, so that a PR is never mistaken for a new one
+     */
+    private GHIssueComment findTrackingComment(GHPullRequest pr) throws IOException {
+        return pr.getComments().stream().filter(comment -> {
+            // call getUserName() to avoid an additional API request
+            if (comment.getUserName().equals(gh.getBotName())) {
+                // Check if message is the same.
+                String body = comment.getBody();
+                return isTrackingMessage(body);
+            }
             return false;
+        }).findFirst().orElse(null);
+    }
+
+    private void rememberTrackingComment(int prID, GHPullRequest pr, GHIssueComment trackingComment) {
+        stateStore.update(prID, state -> {
+            if(state.getTrackingCommentId() != trackingComment.getId()) {
+                state.setTrackingCommentId(trackingComment.getId());
+                state.setRenderedFingerprint(null);
+                state.setRenderedTitleHash(null);
+            }
+            if(pr.getHead() != null) {
+                state.setHeadSha(pr.getHead().getSha());
+            }
+        });
+        // a later mention does not need to run the checks again. The checks section is only valid for the title
+        // it has been rendered for
+        PullRequestState state = stateStore.get(prID);
+        if(state != null && state.getRenderedTitleHash() != null && state.getRenderedTitleHash() == Objects.hashCode(pr.getTitle())) {
+            checkRunner.getResultCache().seed(prID, pr.getTitle(), trackingComment.getBody());
         }
     }
 
+    /**
+     * Whether the comment is the known tracking comment of the PR.
+     */
+    public boolean isTrackingComment(int prID, long commentId) {
+        PullRequestState state = stateStore.get(prID);
+        return state != null && state.getTrackingCommentId() == commentId;
+    }
+
     private boolean isTrackingMessage(String body) {
         return body.substring(0, Math.min(body.length(), 70)).equals(trackingMessage.substring(0, 70));
     }
 
     /**
-     * This is processing all incoming mentions
+     * The key of a PR in the pull request executor, which may be shared by the bots of several repositories.
+     */
+    private int lane(int prID) {
+        return 31 * Objects.hashCode(gh.getRepositoryName()) + prID;
+    }
+
+    /**
+     * Schedules the update of a PR after a new (or deleted) comment. Updates of the same PR are processed in the order
+     * they were scheduled.
      *
-     * @param notifications new incoming notifications
+     * @param triggeringCommentId the comment which caused the update, or 0 if unknown. The update waits until
+     *                            the comment is visible in the API.
+     * @param rebuild whether the review state needs to be rebuilt from all comments, e.g. after a comment was deleted.
      */
-    public void processBotMentions(Iterator<GHThread> notifications) {
-        while (notifications.hasNext()) {
-            GHThread thread = notifications.next();
-            LOG.info("Found a notification with title '" + thread.getTitle() + "'");
+    public void schedulePullRequestUpdate(int prID, long triggeringCommentId, boolean rebuild) {
+        MENTIONS.inc();
+        long item = 0;
+        try {
+            item = journal.accept(prID, triggeringCommentId, rebuild);
+        } catch (IOException e) {
+            LOG.warn("Unable to journal the update of PR #" + prID, e);
+        }
+        scheduleUpdate(item, prID, triggeringCommentId, rebuild, false);
+    }
+
+    /**
+     * Schedules the updates which have been accepted, but not finished before the last shutdown.
+     */
+    public void replayJournal() {
+        for(WorkJournal.Item item: journal.getOpenItems()) {
+            if(item.getReplays() >= MAX_REPLAYS) {
+                LOG.warn("Giving up on update {}, it failed after {} replays", item, item.getReplays());
+                journal.done(item.getId());
+                continue;
+            }
+            LOG.info("Replaying unfinished update of PR #{}", item.getPrID());
+            JOURNAL_REPLAYED.inc();
+            journal.replayed(item.getId());
+            // the triggering comment has been visible for long
+            scheduleUpdate(item.getId(), item.getPrID(), 0, item.isRebuild(), true);
+        }
+    }
+
+    private void scheduleUpdate(long item, int prID, long triggeringCommentId, boolean rebuild, boolean replay) {
+        pullRequestExecutor.execute(lane(prID), () -> {
             try {
-                if(thread.isRead()) {
-                    LOG.debug("Skipping read notification with title "+thread.getTitle());
-                    continue;
+                GHPullRequest pullRequest = gh.getPullRequest(prID);
+                if(replay && pullRequest.getState() == GHIssueState.CLOSED) {
+                    LOG.info("PR #{} has been closed meanwhile, dropping its unfinished update", prID);
+                    journal.done(item);
+                    return;
                 }
-                if (thread.getReason().equals("mention")) {
-                    // we immediately mark the notification as read to avoid concurrency issues with newer comments
-                    // being posted while still processing the old ones.
-                    LOG.debug("Marking notification with reason '{}' and title '{}' as read", thread.getReason(), thread.getTitle());
-                    thread.markAsRead();
-                    Thread.sleep(1000); // + sleep some time to ensure we get new comments with this fetch
-
-                    GHPullRequest boundPR = thread.getBoundPullRequest();
-                    List<GHObject> commentsAndReviews = new ArrayList<>();
-                    commentsAndReviews.addAll(boundPR.getComments());
-                    commentsAndReviews.addAll(boundPR.listReviews().asList());
-
-                    // sort by date, so that we process mentions in order
-                    Collections.sort(commentsAndReviews, (o1, o2) -> {
-                        try {
-                            return o1.getCreatedAt().compareTo(o2.getCreatedAt());
-                        } catch (IOException e) {
-                            // Throw an exception here. IOExceptions should not happen (It's a mistake by the library)
-                            LOG.warn("Error while sorting", e);
-                            throw new RuntimeException("Error while sorting", e);
-                        }
-                    });
+                if(rebuild) {
+                    resetReviewState(prID);
+                }
+                processPullRequest(pullRequest, triggeringCommentId);
+                finish(prID, item);
+            } catch (FileNotFoundException e) {
+                // deleted, or transferred to another repository
+                LOG.warn("PR #{} not found, dropping its update", prID);
+                journal.done(item);
+            } catch (IOException e) {
+                LOG.warn("Error while processing PR #" + prID, e);
+            }
+        });
+    }
 
-                    updatePullRequestThread(boundPR, commentsAndReviews);
-                } else {
-                    // we will not do anything with this notification.
-                    LOG.debug("Marking notification with reason '{}' and title '{}' as read", thread.getReason(), thread.getTitle());
-                    thread.markAsRead();
+    /**
+     * Marks a journaled update as done, once its write to GitHub went through. Failed updates are replayed after the
+     * next start.
+     */
+    private void finish(int prID, long item) {
+        writeBehind.afterWrite(prID, () -> journal.done(item));
+    }
+
+    private static final Pattern COMMENT_URL_PATTERN = Pattern.compile(".*/issues/comments/([0-9]+)$");
+
+    /**
+     * Extracts the id of an issue comment from its API url. Returns 0 for other urls (such as reviews).
+     */
+    static long getCommentId(String commentUrl) {
+        if(commentUrl == null) {
+            return 0;
+        }
+        Matcher matcher = COMMENT_URL_PATTERN.matcher(commentUrl);
+        return matcher.matches() ? Long.parseLong(matcher.group(1)) : 0;
+    }
+
+    /**
+     * Re-evaluates all comments and reviews of a PR and updates its tracking comment and label.
+     */
+    public void processPullRequest(int prID) throws IOException {
+        processPullRequest(gh.getPullRequest(prID));
+    }
+
+    public void processPullRequest(GHPullRequest pullRequest) throws IOException {
+        processPullRequest(pullRequest, 0);
+    }
+
+    private void processPullRequest(GHPullRequest pullRequest, long triggeringCommentId) throws IOException {
+        long start = System.nanoTime();
+        try {
+            updatePullRequest(pullRequest, triggeringCommentId);
+        } finally {
+            UPDATE_DURATION.observeSince(start);
+        }
+    }
+
+    private void updatePullRequest(GHPullRequest pullRequest, long triggeringCommentId) throws IOException {
+        PullRequestState state = stateStore.get(pullRequest.getNumber());
+        if(state != null && state.getReviewState() != null && state.getCursor() != null) {
+            if(processNewComments(pullRequest, state, triggeringCommentId)) {
+                return;
+            }
+            LOG.info("Rebuilding review state of PR #{} from all comments", pullRequest.getNumber());
+        }
+
+        List<GHObject> commentsAndReviews = new ArrayList<>();
+        commentsAndReviews.addAll(fetchUntilVisible(triggeringCommentId, pullRequest::getComments, GHObject::getId));
+        commentsAndReviews.addAll(pullRequest.listReviews().asList());
+
+        // sort by date, so that we process mentions in order
+        Collections.sort(commentsAndReviews, (o1, o2) -> {
+            try {
+                return o1.getCreatedAt().compareTo(o2.getCreatedAt());
+            } catch (IOException e) {
+                // Throw an exception here. IOExceptions should not happen (It's a mistake by the library)
+                LOG.warn("Error while sorting", e);
+                throw new RuntimeException("Error while sorting", e);
+            }
+        });
+
+        updatePullRequestThread(pullRequest, commentsAndReviews);
+    }
+
+    /**
+     * Forget the folded review state of a PR, for example because a comment has been deleted.
+     */
+    public void resetReviewState(int prID) {
+        if(stateStore.contains(prID)) {
+            stateStore.update(prID, PullRequestState::resetReviewState);
+        }
+    }
+
+    /**
+     * Folds only the comments and reviews which are newer than the cursor of the PR into its stored review state.
+     *
+     * Deleted comments are not detected here, as GitHub only lists the existing ones. With webhooks, a deletion resets
+     * the review state (see {@link #resetReviewState(int)}). When polling the notifications, the commands of a deleted
+     * comment stay in effect until the review state is rebuilt, for example because another comment has been edited.
+     *
+     * @return false if the review state needs to be rebuilt from all comments, because a comment has been edited.
+     */
+    private boolean processNewComments(GHPullRequest pullRequest, PullRequestState state, long triggeringCommentId) throws IOException {
+        int prID = pullRequest.getNumber();
+        List<ThreadComment> newComments = new ArrayList<>();
+        Date cursor = state.getCursor();
+        long lastCommentId = state.getLastCommentId();
+        for(ThreadComment comment: fetchUntilVisible(triggeringCommentId, () -> gh.getCommentsSince(prID, state.getCursor()), ThreadComment::getId)) {
+            if(comment.getId() > state.getLastCommentId()) {
+                newComments.add(comment);
+                lastCommentId = Math.max(lastCommentId, comment.getId());
+                if(comment.getUpdatedAt() != null && comment.getUpdatedAt().after(cursor)) {
+                    cursor = comment.getUpdatedAt();
                 }
-            } catch (Throwable e) {
-                LOG.warn("Error while processing notification", e);
+            } else if(comment.getUpdatedAt() != null && comment.getUpdatedAt().after(state.getCursor())
+                    && !comment.getAuthor().equals(gh.getBotName())) {
+                // the bot's own edits (of the tracking comment) don't contain commands
+                LOG.info("Comment {} on PR #{} has been edited", comment.getId(), prID);
+                return false;
+            }
+        }
+        // reviews can not be queried by time, but there are usually only a few of them
+        long lastReviewId = state.getLastReviewId();
+        for(GHPullRequestReview review: pullRequest.listReviews()) {
+            if(review.getId() > state.getLastReviewId()) {
+                newComments.add(new ThreadComment(review.getId(), review.getUser().getLogin(), review.getBody(), review.getCreatedAt(), review.getUpdatedAt()));
+                lastReviewId = Math.max(lastReviewId, review.getId());
+            }
+        }
+        // process mentions in order
+        newComments.sort(Comparator.comparing(ThreadComment::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        LOG.debug("Processing {} new comments of PR #{}", newComments.size(), prID);
+
+        ReviewState reviewState = state.getReviewState().copy();
+        for(ThreadComment comment: newComments) {
+            try {
+                foldCommands(reviewState, comment.getBody(), comment.getAuthor());
+            } catch (Throwable t) {
+                LOG.warn("Error processing comment '" + comment.getId() + "'. Msg: " + t.getMessage(), t);
             }
-            LOG.info("Done processing notification. Requests remaining: " + gh.getRemainingRequests());
         }
+
+        final Date newCursor = cursor;
+        final long newLastCommentId = lastCommentId;
+        final long newLastReviewId = lastReviewId;
+        stateStore.update(prID, s -> {
+            s.setReviewState(reviewState);
+            s.setCursor(newCursor);
+            s.setLastCommentId(newLastCommentId);
+            s.setLastReviewId(newLastReviewId);
+            if(pullRequest.getHead() != null) {
+                s.setHeadSha(pullRequest.getHead().getSha());
+            }
+        });
+        writeBehind.submit(prID, () -> {
+            boolean written = updateTrackingComment(pullRequest, reviewState, new ArrayList<>(), prID,
+                    body -> gh.updateComment(state.getTrackingCommentId(), body));
+            updateLabels(committerApprovals(reviewState), prID, pullRequest);
+            checkWritten(written, prID);
+        });
+        return true;
     }
 
+    private static final int MAX_FETCH_ATTEMPTS = 5;
 
+    /**
+     * Notifications and webhooks can arrive before a new comment is returned by the API. Fetches the comments until
+     * the triggering comment (or a newer one) is contained, with an exponential backoff between the attempts.
+     */
+    private static <T> List<T> fetchUntilVisible(long triggeringCommentId, CommentFetcher<T> fetcher, ToLongFunction<T> getId) throws IOException {
+        List<T> comments = fetcher.fetch();
+        for(int attempt = 1; triggeringCommentId > 0 && attempt < MAX_FETCH_ATTEMPTS; attempt++) {
+            if(comments.stream().anyMatch(comment -> getId.applyAsLong(comment) >= triggeringCommentId)) {
+                return comments;
+            }
+            LOG.debug("Comment {} is not visible yet, attempt {}", triggeringCommentId, attempt);
+            try {
+                Thread.sleep(250L << attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return comments;
+            }
+            comments = fetcher.fetch();
+        }
+        return comments;
+    }
+
+    private interface CommentFetcher<T> {
+        List<T> fetch() throws IOException;
+    }
 
     /*private */ void updatePullRequestThread(GHPullRequest pullRequest, List<GHObject> comments) {
         if(comments == null) {
@@ -197,8 +706,7 @@ public class Flinkbot {
         }
         LOG.debug("Processing pull request thread with " + comments.size() + " comments");
         GHIssueComment trackingComment = null;
-        final Map<String, Set<String>> trackedApprovals = new HashMap<>();
-        final Set<String> attention = new HashSet<>();
+        final ReviewState reviewState = new ReviewState();
         for(GHObject comment: comments) {
             try {
                 // extract body and username.
@@ -217,87 +725,7 @@ public class Flinkbot {
                     trackingComment = (GHIssueComment) comment;
                 }
 
-                String[] commentLines = commentBody.split("\n");
-                for(String line: commentLines) {
-                    if(line.contains(botName)) {
-                        // remove , or . in the line.
-                        line = line.replaceAll("[,.!?]", "");
-                        String[] tokens = line.split(" ");
-                        for(int i = 0; i < tokens.length; i++) {
-                            if(tokens[i].equals(botName)) {
-                                if(i+2 >= tokens.length) {
-                                    LOG.debug("Incomplete command in: " + line);
-                                    break; // stop processing this line
-                                }
-                                String action = tokens[i+1].toLowerCase().trim();
-                                String approval = tokens[i+2].toLowerCase().trim();
-                                if(action.equals("attention")) {
-                                    if(approval.substring(0,1).equals("@")) {
-                                        attention.add(approval.trim());
-                                    }
-                                    // look for more names
-                                    for(int j = i + 3; j < tokens.length; j++) {
-                                        if(tokens[j].length() > 1 && tokens[j].substring(0,1).equals("@")) {
-                                            attention.add(tokens[j].trim());
-                                        }
-                                    }
-                                } else if(action.equals("approve") || action.equals("disapprove")) {
-                                    if(!ArrayUtils.contains(VALID_APPROVALS, approval) && !approval.equals("all")) {
-                                        LOG.debug("Invalid approval/aspect in " + line);
-                                        break;
-                                    }
-                                    if(action.equals("approve")) {
-                                        if(approval.equals("all")) {
-                                            for(String validApproval: VALID_APPROVALS) {
-                                                addApproval(trackedApprovals, validApproval, commentUserName);
-                                            }
-                                        } else {
-                                            addApproval(trackedApprovals, approval, commentUserName);
-                                            // go through additional approvals
-                                            for(int j = i + 3; j < tokens.length; j++) {
-                                                String additionalApproval = tokens[j];
-                                                if(ArrayUtils.contains(VALID_APPROVALS, additionalApproval)) {
-                                                    addApproval(trackedApprovals, additionalApproval, commentUserName);
-                                                }
-                                            }
-                                        }
-                                    }
-                                    // ugly copy-paste action here
-                                    if(action.equals("disapprove")) {
-                                        if(approval.equals("all")) {
-                                            for(String validApproval: VALID_APPROVALS) {
-                                                removeApproval(trackedApprovals, validApproval, commentUserName);
-                                            }
-                                        } else {
-                                            removeApproval(trackedApprovals, approval, commentUserName);
-                                            // go through additional disapprovals
-                                            for(int j = i + 3; j < tokens.length; j++) {
-                                                String additionalApproval = tokens[j];
-                                                if(ArrayUtils.contains(VALID_APPROVALS, additionalApproval)) {
-                                                    removeApproval(trackedApprovals, additionalApproval, commentUserName);
-                                                }
-                                            }
-                                        }
-                                    }
-                                } else if(action.equals("approve-until")) {
-                                    if(!ArrayUtils.contains(VALID_APPROVALS, approval)) {
-                                        LOG.debug("Invalid approval {} in '{}'", approval, line);
-                                        break;
-                                    }
-                                    for(String approveUntil: VALID_APPROVALS) {
-                                        addApproval(trackedApprovals, approveUntil, commentUserName);
-                                        if(approveUntil.equals(approval)) {
-                                            break;
-                                        }
-                                    }
-                                } else {
-                                    LOG.debug("Incomplete command in: " + line);
-                                    break; // stop processing this line
-                                }
-                            }
-                        }
-                    }
-                }
+                foldCommands(reviewState, commentBody, commentUserName);
             } catch (Throwable t) {
                 LOG.warn("Error processing comment '"+comment+"'. Msg: "+t.getMessage(), t);
             }
@@ -307,118 +735,146 @@ public class Flinkbot {
         if(trackingComment == null) {
             LOG.warn("Invalid notification? comments do not contain tracking message " + comments);
             return; // leave method. Updating the labels also depends on a valid tracking comment
-        } else {
-            // generate comment
-            StringBuffer newComment = new StringBuffer();
-            String[] messageLines = trackingMessage.split("\n");
-            boolean updateWarnings = false;
-            for(String line: messageLines) {
-                // decide whether we add something
-                boolean tick = false;
-                boolean attentionTick = false;
-                String nextLine = null;
-                for(String approval: VALID_APPROVALS) {
-                    if(line.contains("[" + approval + "]")) {
-                       String append = "    - Approved by ";
-                       Set<String> approversSet = trackedApprovals.get(approval);
-                       if(approversSet != null && approversSet.size() > 0) {
-                           List<String> approvers = new ArrayList<>(approversSet);
-                           Collections.sort(approvers); // equality
-                           append += StringUtils.join(addCommunityStatus(approvers), ", ");
-                           nextLine = append;
-                           tick = true;
-                       }
-                    }
-                }
-                if(line.contains("[attention]")) {
-                    String append = "    - Needs attention by ";
-                    if(attention.size() > 0) {
-                        List<String> attSorted = new ArrayList<>(attention);
-                        Collections.sort(attSorted);
-                        append += StringUtils.join(addCommunityStatus(attSorted), ", ");
-                        nextLine = append;
-                        tick = true;
-                        attentionTick = true;
-
-                        addAttentionToReviewers(attention, trackingComment.getParent().getNumber());
-                    }
-                }
-
-                // set updateWarnings flag appropriately (to statically generate the warnings section)
-                if(line.contains("##CHECKS PLACEHOLDER##")) {
-                    // extract from a string like:
-                    updateWarnings = true; // this will ignore the existing warning lines
-                    newComment.append(generateWarningsSection(pullRequest, comments)); // This appends new warning lines
+        }
+        int prID = trackingComment.getParent().getNumber();
+        rememberTrackingComment(prID, pullRequest, trackingComment);
+        rememberReviewState(prID, reviewState, comments);
+
+        final GHIssueComment comment = trackingComment;
+        writeBehind.submit(prID, () -> {
+            boolean written = updateTrackingComment(pullRequest, reviewState, comments, prID, body -> {
+                if(!body.equals(comment.getBody())) {
+                    // need to update
+                    comment.update(body);
                 }
+            });
+            updateLabels(committerApprovals(reviewState), prID, pullRequest);
+            checkWritten(written, prID);
+        });
+    }
 
-                if(line.contains("## Review Progress")) {
-                    updateWarnings = false;
-                }
+    /**
+     * Writes the pending updates of the tracking comments and labels now, e.g. before shutting down.
+     */
+    public void flushWrites() {
+        writeBehind.flush();
+    }
 
-                // (conditionally) copy the original line
-                if(tick) {
-                    if (attentionTick) {
-                        newComment.append(line.replace("❓", "❗"));
-                    } else {
-                        newComment.append(line.replace("❓", "✅"));
-                    }
+    /**
+     * Stores the review state, with a cursor pointing to the newest of the given comments and reviews.
+     */
+    private void rememberReviewState(int prID, ReviewState reviewState, List<GHObject> comments) {
+        long lastCommentId = 0;
+        long lastReviewId = 0;
+        Date cursor = new Date(0);
+        for(GHObject comment: comments) {
+            try {
+                if(comment instanceof GHPullRequestReview) {
+                    lastReviewId = Math.max(lastReviewId, comment.getId());
                 } else {
-                    //normal behavior
-                    if(!updateWarnings) {
-                        newComment.append(line);
+                    lastCommentId = Math.max(lastCommentId, comment.getId());
+                    Date updatedAt = comment.getUpdatedAt();
+                    if(updatedAt != null && updatedAt.after(cursor)) {
+                        cursor = updatedAt;
                     }
                 }
-
-
-
-                newComment.append("\n");
-                if(nextLine != null) {
-                    newComment.append(nextLine);
-                    newComment.append("\n");
-                }
-            }
-            try {
-                newComment.deleteCharAt(newComment.length()-1); // remove trailing newline
-                String newCommentString = newComment.toString();
-                if(!newCommentString.equals(trackingComment.getBody())) {
-
-                    // need to update
-                    trackingComment.update(newCommentString);
-                    LOG.info("Updating tracking comment on PR: " + pullToSimpleString(trackingComment.getParent()));
-                }
             } catch (IOException e) {
-                LOG.warn("Error updating tracking comment", e);
+                LOG.warn("Unable to determine cursor of PR #{}", prID, e);
+                return;
             }
         }
+        final long newLastCommentId = lastCommentId;
+        final long newLastReviewId = lastReviewId;
+        final Date newCursor = cursor;
+        stateStore.update(prID, state -> {
+            state.setReviewState(reviewState);
+            state.setLastCommentId(newLastCommentId);
+            state.setLastReviewId(newLastReviewId);
+            state.setCursor(newCursor);
+        });
+    }
 
-        // remove non-committer/PMC approvals, then update labels
-        Set<String> committersAndPmc = new HashSet<>();
-        for(String committer: committers) {
-            committersAndPmc.add("@"+committer);
+    /**
+     * Applies the bot commands in the given comment to the review state.
+     */
+    private void foldCommands(ReviewState reviewState, String commentBody, String commentUserName) {
+        commandParser.parse(commentBody, command -> command.applyTo(reviewState, commentUserName));
+    }
+
+    /**
+     * Runs the checks and renders the tracking comment for the review state. Rendering and writing are skipped if
+     * neither the review state nor the results of the checks changed since the comment was last written.
+     *
+     * @return false if writing the comment failed
+     */
+    private boolean updateTrackingComment(GHPullRequest pullRequest, ReviewState reviewState, List<GHObject> comments, int prID,
+                                       TrackingCommentWriter writer) {
+        // also called without attention requests, to forget the reviewers whose attention is no longer required
+        addAttentionToReviewers(reviewState.getAttention(), pullRequest, prID);
+        // shared by all checks, so that the files of the PR are fetched only once
+        PullRequestContext context = new PullRequestContext(pullRequest, comments);
+        List<String> warnings = checkRunner.runChecks(context);
+        int fingerprint = fingerprint(reviewState, context.getHeadSha(), warnings);
+        PullRequestState state = stateStore.get(prID);
+        int titleHash = Objects.hashCode(context.getTitle());
+        if(state != null && state.getRenderedFingerprint() != null && state.getRenderedFingerprint() == fingerprint) {
+            LOG.debug("Tracking comment on PR #{} is up to date", prID);
+            COMMENT_UPDATES_SKIPPED.inc();
+            // the comment is what would be rendered for the current title
+            stateStore.update(prID, s -> s.setRenderedTitleHash(titleHash));
+            return true;
         }
-        for(String pm: pmc) {
-            committersAndPmc.add("@"+pm);
+        long start = System.nanoTime();
+        try {
+            writer.write(trackingTemplate.render(reviewState, renderChecksSection(context.getHeadSha(), warnings)));
+            COMMENT_UPDATE_DURATION.observeSince(start);
+            LOG.info("Updating tracking comment on PR: " + pullToSimpleString(pullRequest));
+        } catch (IOException e) {
+            LOG.warn("Error updating tracking comment", e);
+            return false;
         }
-        for(Map.Entry<String, Set<String>> approval: trackedApprovals.entrySet()) {
-            Set<String> approvalSet = approval.getValue();
-            if(approvalSet != null && approvalSet.size() > 0) {
-                approvalSet.retainAll(committersAndPmc);
-            }
+        stateStore.update(prID, s -> {
+            s.setRenderedFingerprint(fingerprint);
+            s.setRenderedTitleHash(titleHash);
+        });
+        return true;
+    }
+
+    /**
+     * Fails the write of a PR, so that the journaled updates it covers are replayed.
+     */
+    private static void checkWritten(boolean written, int prID) {
+        if(!written) {
+            throw new IllegalStateException("The tracking comment of PR #" + prID + " has not been written");
         }
-        updateLabels(trackedApprovals, trackingComment.getParent().getNumber());
     }
 
-    private String generateWarningsSection(GHPullRequest pullRequest, List<GHObject> comments) {
-        List<String> warnings = new ArrayList<>();
-        for(PullRequestCheck check: PULL_REQUEST_CHECK) {
-            String result = check.runCheck(pullRequest, comments);
-            if (result != null) {
-                warnings.add(result);
-            }
+    private int fingerprint(ReviewState reviewState, String headSha, List<String> warnings) {
+        // the roles are shown next to the users
+        return 31 * trackingTemplate.fingerprint(reviewState, headSha, warnings) + roster.getRoles().hashCode();
+    }
+
+    private interface TrackingCommentWriter {
+        void write(String body) throws IOException;
+    }
+
+    /**
+     * Only approvals by committers or PMC members count for the labels.
+     */
+    private Map<String, Set<String>> committerApprovals(ReviewState reviewState) {
+        CommunityRoles roles = roster.getRoles();
+        Map<String, Set<String>> result = new HashMap<>();
+        for(Map.Entry<String, Set<String>> approval: reviewState.getApprovals().entrySet()) {
+            Set<String> approvalSet = new HashSet<>(approval.getValue());
+            approvalSet.removeIf(login -> !roles.isCommitterOrPmc(login));
+            result.put(approval.getKey(), approvalSet);
         }
+        return result;
+    }
 
-        StringBuffer section = new StringBuffer();
-        section.append("Last check on commit " + pullRequest.getHead().getSha() + " (" + new Date() + ")\n\n");
+    private static String renderChecksSection(String headSha, List<String> warnings) {
+        StringBuilder section = new StringBuilder(256);
+        section.append("Last check on commit ").append(headSha).append(" (").append(new Date()).append(")\n\n");
         if(warnings.size() == 0) {
             section.append(" ✅no warnings");
         } else {
@@ -435,52 +891,52 @@ public class Flinkbot {
     }
 
     /**
-     * Add "attention" mentioned users to the reviewers
-     *
+     * Requests a review from the users whose attention is required, with a single request per PR. Users whose review
+     * is currently requested, the author and users who are not collaborators of the repository are left out. The bot
+     * remembers the users it has requested as long as their attention is required, so that they are not requested
+     * again after they have reviewed. Once the attention request is withdrawn, a new one requests them again.
      */
-    private void addAttentionToReviewers(Set<String> attention, int prID) {
-
-        //
-        // Disable attention to reviewers, because it doesn't work at the moment
-        //
-        return;
-
-        /*Set<String> addReviewers = new HashSet<>(attention);
+    void addAttentionToReviewers(Set<String> attention, GHPullRequest pullRequest, int prID) {
         try {
-            GHPullRequest pullRequest = gh.getWriteableRepository().getPullRequest(prID);
-            String fullRepoName = pullRequest.getRepository().getFullName();
-
-            List<GHUser> reviewers = new ArrayList<>(pullRequest.getRequestedReviewers());
-            for(GHUser reviewer: reviewers) {
-                String login = reviewer.getLogin();
-                addReviewers.remove(removeAt(login));
+            Set<String> candidates = new HashSet<>();
+            for(String mention: attention) {
+                candidates.add(removeAt(mention).toLowerCase(Locale.ROOT));
+            }
+            PullRequestState state = stateStore.get(prID);
+            Set<String> remembered = state == null ? Collections.emptySet() : state.getRequestedReviewers();
+            // forget the users whose attention is no longer required
+            Set<String> requested = new HashSet<>(remembered);
+            requested.retainAll(candidates);
+            candidates.removeAll(requested);
+            if(pullRequest.getUser() != null) {
+                candidates.remove(pullRequest.getUser().getLogin().toLowerCase(Locale.ROOT));
             }
 
-            // add remaining reviewers
-
-            LOG.info("Assigning new reviewers {} for PR #{}", addReviewers, prID);
-            for(String toAddUsername: addReviewers) {
-                GHUser user = getRepoCollaborators(fullRepoName).byLogin(removeAt(toAddUsername));
-                if(user == null) {
-                    LOG.info("User {} has not been added as a reviewer, because they are not a collaborator of the repo", toAddUsername);
-                } else {
-                    // user is a collaborator, so can be added to the reviewers
-                    reviewers.add(user);
+            if(!candidates.isEmpty()) {
+                for(GHUser reviewer: pullRequest.getRequestedReviewers()) {
+                    candidates.remove(reviewer.getLogin().toLowerCase(Locale.ROOT));
+                }
+                List<String> reviewers = new ArrayList<>();
+                for(String login: candidates) {
+                    String collaborator = gh.getCollaborator(login);
+                    if(collaborator == null) {
+                        LOG.info("User {} has not been added as a reviewer, because they are not a collaborator of the repo", login);
+                    } else {
+                        reviewers.add(collaborator);
+                        requested.add(login);
+                    }
+                }
+                if(!reviewers.isEmpty()) {
+                    LOG.info("Requesting reviews from {} on PR #{}", reviewers, prID);
+                    gh.requestReviewers(prID, reviewers);
                 }
-
             }
-            pullRequest.requestReviewers(reviewers);
-
+            if(!requested.equals(remembered)) {
+                stateStore.update(prID, s -> s.setRequestedReviewers(requested));
+            }
         } catch(Throwable e) {
             LOG.warn("Error while updating reviewers", e);
-        } */
-    }
-
-    private GHPersonSet<GHUser> getRepoCollaborators(String repo) {
-        if(this.repoCollaborators == null) {
-            repoCollaborators = new HashMap<>();
         }
-        return repoCollaborators.computeIfAbsent(repo, gh::getCollaborators);
     }
 
     // remove @ at the beginning
@@ -489,12 +945,11 @@ public class Flinkbot {
     }
 
     /**
-     * Update the labels of the PR based on the approvals
+     * Applies the review label matching the approvals. The labels of the PR are only read and written if the label
+     * differs from the one we applied last time, and then replaced with a single request.
      */
-    private void updateLabels(Map<String, Set<String>> approvals, int prID) {
+    void updateLabels(Map<String, Set<String>> approvals, int prID, GHIssue pullRequest) {
         try {
-            // get writable connection
-            GHIssue pullRequest = gh.getWriteableRepository().getIssue(prID);
             boolean hasDescriptionApproval = hasApproval("description", approvals);
             boolean hasConsensusApproval = hasApproval("consensus", approvals);
             boolean hasArchitectureApproval = hasApproval("architecture", approvals);
@@ -514,59 +969,39 @@ public class Flinkbot {
                 }
             }
 
-            // update labels
-            Collection<GHLabel> labels = pullRequest.getLabels();
-            GHLabel reviewLabel = null;
-            for(GHLabel label: labels) {
-                if(label.getName().startsWith(LABEL_PREFIX)) {
-                    if(reviewLabel == null) {
-                        reviewLabel = label;
-                    } else {
-                        LOG.warn("Detected multiple review labels on {}: {} and {}. Deleting it!", pullRequest, reviewLabel.getName(), label.getName());
-                        pullRequest.removeLabels(label);
-                    }
-                }
+            PullRequestState state = stateStore.get(prID);
+            if(state != null && labelString.equals(state.getLabel())) {
+                return;
             }
-            if(reviewLabel == null) {
-                // add label
-                GHLabel ghLabel = createOrGetLabel(labelString, pullRequest.getRepository());
-                pullRequest.addLabels(ghLabel);
-                LOG.info("Adding label {} to PR {}", labelString, pullRequest.getTitle());
-            } else if(!reviewLabel.getName().equals(labelString)) {
-                LOG.info("Updating label from {} to {} on PR {}", reviewLabel.getName(), labelString, pullRequest.getTitle());
-                pullRequest.removeLabels(reviewLabel);
 
-                GHLabel ghLabel = createOrGetLabel(labelString, pullRequest.getRepository());
-                pullRequest.addLabels(ghLabel);
+            // keep all other labels, and exactly one review label. The current labels are read right before the
+            // update (not taken from the issue, which may be older), so that labels added meanwhile are kept
+            List<String> currentLabels = gh.getLabels(prID);
+            Set<String> newLabels = new LinkedHashSet<>();
+            for(String name: currentLabels) {
+                if(!name.startsWith(LABEL_PREFIX)) {
+                    newLabels.add(name);
+                }
             }
+            newLabels.add(labelString);
+            if(!newLabels.equals(new LinkedHashSet<>(currentLabels))) {
+                LOG.info("Updating labels from {} to {} on PR {}", currentLabels, newLabels, pullToSimpleString(pullRequest));
+                try {
+                    labelCatalog.ensureExists(labelString);
+                } catch (Throwable e) {
+                    // GitHub creates missing labels, albeit without our color
+                    LOG.warn("Unable to ensure that label '{}' exists", labelString, e);
+                }
+                gh.replaceLabels(prID, newLabels);
+            }
+            final String label = labelString;
+            stateStore.update(prID, s -> s.setLabel(label));
         } catch(Throwable e) {
             LOG.warn("Error while updating labels", e);
         }
 
     }
 
-    private GHLabel createOrGetLabel(String labelString, GHRepository repository) throws IOException {
-        try {
-            return repository.getLabel(labelString);
-        } catch(FileNotFoundException noLabel) {
-            LOG.debug("Label '{}' did not exist", labelString, noLabel);
-            LOG.info("Label '{}' did not exist, creating it", labelString);
-            return repository.createLabel(labelString, LABEL_COLOR);
-        }
-    }
-
-    private List<String> addCommunityStatus(List<String> ghLogins) {
-        return ghLogins.stream().map(login -> {
-            String noAt = login.replace("@", "");
-            if(ArrayUtils.contains(this.committers, noAt)) {
-                login += " [committer]";
-            } else if(ArrayUtils.contains(this.pmc, noAt)) {
-                login += " [PMC]";
-            }
-            return login;
-        }).collect(Collectors.toList());
-    }
-
     private boolean hasApproval(String aspect, Map<String, Set<String>> approvals) {
         if(approvals == null) {
             return false;
@@ -579,25 +1014,6 @@ public class Flinkbot {
         return approvers.size() > 0;
     }
 
-    private static void addApproval(Map<String, Set<String>> approvals, String approvalName, String userName) {
-        Set<String> approver = approvals.get(approvalName);
-        if (approver == null) {
-            approver = new HashSet<>();
-        }
-        approver.add("@" + userName);
-        approvals.put(approvalName, approver);
-    }
-
-    private void removeApproval(Map<String, Set<String>> trackedApprovals, String approval, String userName) {
-        Set<String> approver = trackedApprovals.get(approval);
-        if(approver == null) {
-            approver = new HashSet<>();
-        }
-        approver.remove("@" + userName);
-        trackedApprovals.put(approval, approver);
-    }
-
-
     private static String pullToSimpleString(GHIssue pr) {
         return "#" + pr.getNumber() + ": " + pr.getTitle();
     }
@@ -1,9 +1,17 @@
 package de.robertmetzger.flink.community.flinkbot;
 
 
-import okhttp3.Cache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.Credentials;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.OkUrlFactory;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
 import org.kohsuke.github.*;
 import org.kohsuke.github.extras.OkHttp3Connector;
 import org.slf4j.Logger;
@@ -11,11 +19,30 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class Github {
     private static Logger LOG = LoggerFactory.getLogger(Github.class);
 
+    private static final String API_URL = "https://api.github.com";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Pattern NEXT_LINK = Pattern.compile("<([^>]+)>; rel=\"next\"");
+    private static final Pattern NUMBER_SEGMENT = Pattern.compile("/[0-9]+(?=/|$)");
+    private static final Pattern PULL_REQUEST_URL = Pattern.compile(".*/pulls/([0-9]+)$");
+
+    private static final Metrics.Counter REQUESTS = Metrics.counter("flinkbot_github_requests_total",
+            "Requests to the GitHub API, by client and operation. source is cache, conditional (revalidated) or network.",
+            "client", "operation", "source");
+
     private final GitHub cachedGitHub;
 
     private final GitHub directGitHub;
@@ -29,22 +56,56 @@ public class Github {
     private final GitHub writeGitHub;
     private String botName;
 
+    // plain HTTP access for the queries the GitHub library does not support
+    private final OkHttpClient directClient;
+    private final String credentials;
+    // uncached, the notifications are polled with conditional requests of their own
+    private final OkHttpClient notificationClient;
+    private final OkHttpClient writeClient;
+    private final String writeCredentials;
+    private final String writeUser;
+
+    private final String apiUrl;
+    // null if the traffic is not recorded
+    private final TrafficRecorder recorder;
+    private final ResponseCache responseCache;
+    // null if the GraphQL API is not used
+    private final PullRequestSnapshotQuery snapshotQuery;
+    // all clients share the rate limit budgets of their credentials
+    private final RateLimitScheduler rateLimitScheduler;
+    // the repositories served through the shared clients, see forRepository()
+    private final Set<String> repositories;
+    private final CollaboratorIndex collaborators;
+
     public Github(Properties prop) {
         int cacheMB = Integer.valueOf(prop.getProperty("main.cacheMB"));
+        int cacheMaxMB = Integer.valueOf(prop.getProperty("main.cacheMaxMB", String.valueOf(Math.max(cacheMB, 100))));
         String cacheDir = prop.getProperty("main.cacheDir");
         botName = prop.getProperty("gh.user");
-
+        repository = prop.getProperty("gh.repo");
+        repositories = new CopyOnWriteArraySet<>();
+        if(repository != null) {
+            repositories.add(repository);
+        }
+        writeUser = prop.getProperty("gh.write.user");
+        rateLimitScheduler = new RateLimitScheduler(Integer.valueOf(prop.getProperty("gh.backgroundReserve", "1000")),
+                Integer.valueOf(prop.getProperty("gh.maxConcurrentRequests", "32")));
+        apiUrl = prop.getProperty("gh.apiUrl", API_URL);
 
         try {
-            Cache cache = new Cache(new File(cacheDir), cacheMB * 1024 * 1024);
-            OkHttpClient.Builder okHttpClient = new OkHttpClient.Builder();
-            okHttpClient.cache(cache);
-            cachedGitHub = GitHubBuilder.fromEnvironment().withPassword(botName, prop.getProperty("gh.token"))
+            String recordFile = prop.getProperty("gh.recordFile");
+            recorder = recordFile == null || recordFile.trim().isEmpty() ? null : new TrafficRecorder(new File(recordFile.trim()), apiUrl);
+            responseCache = new ResponseCache(new File(cacheDir), cacheMB, cacheMaxMB);
+            OkHttpClient.Builder okHttpClient = newClient();
+            okHttpClient.cache(responseCache.getCache());
+            okHttpClient.addInterceptor(countRequests("cached"));
+            okHttpClient.addInterceptor(responseCache.countResults("cached"));
+            okHttpClient.addNetworkInterceptor(rateLimitScheduler.interceptor(botName));
+            cachedGitHub = GitHubBuilder.fromEnvironment().withEndpoint(apiUrl).withPassword(botName, prop.getProperty("gh.token"))
                     .withConnector(new OkHttp3Connector(new OkUrlFactory(okHttpClient.build())))
                     .build();
-            if(!cachedGitHub.isCredentialValid()) {
-                throw new RuntimeException("Invalid credentials");
-            }
+            // validate the credentials while the other connections are set up
+            CompletableFuture<Boolean> credentialsValid = isCredentialValid(cachedGitHub);
 
 
 
@@ -56,74 +117,402 @@ public class Github {
 
             System.exit(1); */
 
-            // also establish an uncached connection with GitHub for notifications processing
-            directGitHub = GitHubBuilder.fromEnvironment().withPassword(botName, prop.getProperty("gh.token"))
-                    .withConnector(new OkHttp3Connector(new OkUrlFactory(new OkHttpClient.Builder().build())))
+            // also establish a connection with GitHub which always sees the latest data, for notifications processing.
+            // It shares the cache, but revalidates every response: unchanged resources don't cost quota.
+            directClient = newClient()
+                    .cache(responseCache.getCache())
+                    .addInterceptor(countRequests("direct"))
+                    .addInterceptor(responseCache.countResults("direct"))
+                    .addNetworkInterceptor(responseCache.revalidate())
+                    .addNetworkInterceptor(rateLimitScheduler.interceptor(botName))
                     .build();
+            credentials = Credentials.basic(botName, prop.getProperty("gh.token"));
+            notificationClient = newClient()
+                    .addInterceptor(countRequests("notifications"))
+                    .addNetworkInterceptor(rateLimitScheduler.interceptor(botName))
+                    .build();
+            directGitHub = GitHubBuilder.fromEnvironment().withEndpoint(apiUrl).withPassword(botName, prop.getProperty("gh.token"))
+                    .withConnector(new OkHttp3Connector(new OkUrlFactory(directClient)))
+                    .build();
+
+            if(Boolean.parseBoolean(prop.getProperty("gh.graphql", "false"))) {
+                // GraphQL requests have their own rate limit
+                OkHttpClient graphQlClient = newClient()
+                        .addInterceptor(countRequests("graphql"))
+                        .addNetworkInterceptor(rateLimitScheduler.interceptor(botName + " (GraphQL)"))
+                        .build();
+                snapshotQuery = new PullRequestSnapshotQuery(graphQlClient, prop.getProperty("gh.graphqlUrl", apiUrl + "/graphql"), credentials);
+            } else {
+                snapshotQuery = null;
+            }
 
             // use an uncached connection for the write connection, as writes can lead to caching issues.
-            writeGitHub = GitHubBuilder.fromEnvironment().withPassword(prop.getProperty("gh.write.user"), prop.getProperty("gh.write.token"))
-                    .withConnector(new OkHttp3Connector(new OkUrlFactory(new OkHttpClient.Builder().build())))
+            writeClient = newClient()
+                    .addInterceptor(countRequests("write"))
+                    .addNetworkInterceptor(rateLimitScheduler.interceptor(writeUser))
                     .build();
+            writeCredentials = Credentials.basic(writeUser, prop.getProperty("gh.write.token"));
+            writeGitHub = GitHubBuilder.fromEnvironment().withEndpoint(apiUrl).withPassword(writeUser, prop.getProperty("gh.write.token"))
+                    .withConnector(new OkHttp3Connector(new OkUrlFactory(writeClient)))
+                    .build();
+            CompletableFuture<Boolean> writeCredentialsValid = isCredentialValid(writeGitHub);
 
-            if(!writeGitHub.isCredentialValid()) {
+            if(!getValidationResult(credentialsValid)) {
+                throw new RuntimeException("Invalid credentials");
+            }
+            if(!getValidationResult(writeCredentialsValid)) {
                 throw new RuntimeException("Invalid write credentials");
             }
-
         } catch (IOException e) {
             throw new RuntimeException("Error initializing GitHub", e);
         }
-        repository = prop.getProperty("gh.repo");
-        minPRNumber = Integer.valueOf(prop.getProperty("gh.minPRNumber"));
+        minPRNumber = Integer.valueOf(prop.getProperty("gh.minPRNumber", "0"));
+        collaborators = new CollaboratorIndex(this::listCollaborators,
+                TimeUnit.MINUTES.toMillis(Long.valueOf(prop.getProperty("gh.collaboratorsTtlMinutes", "60"))));
+    }
+
+    private Github(Github shared, String repository, int minPRNumber) {
+        this.cachedGitHub = shared.cachedGitHub;
+        this.directGitHub = shared.directGitHub;
+        this.writeGitHub = shared.writeGitHub;
+        this.botName = shared.botName;
+        this.directClient = shared.directClient;
+        this.credentials = shared.credentials;
+        this.notificationClient = shared.notificationClient;
+        this.writeClient = shared.writeClient;
+        this.writeCredentials = shared.writeCredentials;
+        this.writeUser = shared.writeUser;
+        this.apiUrl = shared.apiUrl;
+        this.recorder = shared.recorder;
+        this.responseCache = shared.responseCache;
+        this.snapshotQuery = shared.snapshotQuery;
+        this.rateLimitScheduler = shared.rateLimitScheduler;
+        this.repositories = shared.repositories;
+        this.collaborators = shared.collaborators;
+        this.repository = repository;
+        this.minPRNumber = minPRNumber;
+        repositories.add(repository);
     }
 
     /**
-     * Gets all open pull requests (treated as issues)
+     * Returns a Github for another repository. It shares the connections, the response cache and the rate limit
+     * budgets of the credentials with this one, so that all repositories served by the bot draw from the same quota.
      */
-    public List<GHPullRequest> getAllPullRequests() {
+    public Github forRepository(String repository, int minPRNumber) {
+        return new Github(this, repository, minPRNumber);
+    }
+
+    private static CompletableFuture<Boolean> isCredentialValid(GitHub gitHub) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return gitHub.isCredentialValid();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static boolean getValidationResult(CompletableFuture<Boolean> valid) throws IOException {
         try {
-            GHRepository repo = cachedGitHub.getRepository(repository);
-            List<GHPullRequest> allIssues = repo.getPullRequests(GHIssueState.OPEN);
-            allIssues.removeIf(issue -> issue.getNumber() < minPRNumber);
-            return allIssues;
-        } catch (IOException e) {
-            LOG.warn("Error getting pull requests", e);
-            return new ArrayList<>();
+            return valid.join();
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * A client builder which records the traffic, if enabled with gh.recordFile.
+     */
+    private OkHttpClient.Builder newClient() {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if(recorder != null) {
+            builder.addInterceptor(recorder);
+        }
+        return builder;
+    }
+
+    /**
+     * Gets all open pull requests (treated as issues)
+     *
+     * @throws IOException if the pull requests could not be listed. An empty list means that there are no open PRs.
+     */
+    public List<GHPullRequest> getAllPullRequests() throws IOException {
+        GHRepository repo = cachedGitHub.getRepository(repository);
+        List<GHPullRequest> allIssues = repo.getPullRequests(GHIssueState.OPEN);
+        allIssues.removeIf(issue -> issue.getNumber() < minPRNumber);
+        return allIssues;
+    }
+
+    public boolean hasPullRequestSnapshots() {
+        return snapshotQuery != null;
+    }
+
+    /**
+     * Gets the snapshots of all open pull requests with the GraphQL API, with about one request per 100 pull requests.
+     * Only available if enabled with gh.graphql.
+     */
+    public List<PullRequestSnapshot> getPullRequestSnapshots() throws IOException {
+        if(snapshotQuery == null) {
+            throw new IllegalStateException("The GraphQL API is not enabled");
         }
+        return snapshotQuery.fetch(repository, minPRNumber, botName);
+    }
+
+    /**
+     * Gets a single pull request through the uncached connection, so that we see its latest comments.
+     */
+    public GHPullRequest getPullRequest(int number) throws IOException {
+        return directGitHub.getRepository(repository).getPullRequest(number);
+    }
+
+    public String getRepositoryName() {
+        return repository;
     }
 
     public String getBotName() {
         return botName;
     }
 
+    /**
+     * @return true if background work (scanning for new PRs) is deferred, because the rate limit is low
+     */
+    public boolean isBackgroundDeferred() {
+        return rateLimitScheduler.isDeferred(botName)
+                || (snapshotQuery != null && rateLimitScheduler.isDeferred(botName + " (GraphQL)"));
+    }
+
+    /**
+     * Remaining requests of the bot, as reported by the last response. -1 if unknown.
+     */
     public int getRemainingRequests() {
-        try {
-            return cachedGitHub.getRateLimit().remaining;
-        } catch (IOException e) {
-            LOG.info("Unable to get current rate limit", e);
-            return -1;
-        }
+        return rateLimitScheduler.getRemaining(botName);
     }
+
     public int getRemainingWriteRequests() {
-        try {
-            return writeGitHub.getRateLimit().remaining;
-        } catch (IOException e) {
-            LOG.info("Unable to get current rate limit", e);
-            return -1;
+        return rateLimitScheduler.getRemaining(writeUser);
+    }
+
+    /**
+     * Decides on the size of the response cache after the next start, see {@link ResponseCache#adaptSize()}.
+     */
+    public void adaptCacheSize() {
+        responseCache.adaptSize();
+    }
+
+    /**
+     * Lists the unread notifications of the bot user (in all repositories) which have been updated after the given
+     * time.
+     *
+     * @param lastModified the Last-Modified value of the previous listing, or null. If nothing changed since then,
+     *                     GitHub answers with 304 Not Modified, which does not cost quota.
+     */
+    public Notification.Page getNotifications(Date since, String lastModified) throws IOException {
+        HttpUrl url = HttpUrl.get(apiUrl + "/notifications").newBuilder()
+                .addQueryParameter("all", "false")
+                .addQueryParameter("participating", "false")
+                .addQueryParameter("since", since.toInstant().toString())
+                .addQueryParameter("per_page", "50")
+                .build();
+        List<Notification> notifications = new ArrayList<>();
+        String newLastModified = lastModified;
+        int pollIntervalSeconds = 60;
+        boolean first = true;
+        while (url != null) {
+            Request.Builder request = new Request.Builder().url(url).header("Authorization", credentials);
+            if(first && lastModified != null) {
+                request.header("If-Modified-Since", lastModified);
+            }
+            try (Response response = notificationClient.newCall(request.build()).execute()) {
+                if(first) {
+                    String pollInterval = response.header("X-Poll-Interval");
+                    if(pollInterval != null) {
+                        pollIntervalSeconds = Integer.parseInt(pollInterval.trim());
+                    }
+                    if(response.code() == 304) {
+                        return new Notification.Page(null, lastModified, pollIntervalSeconds);
+                    }
+                    newLastModified = response.header("Last-Modified", lastModified);
+                    first = false;
+                }
+                if(!response.isSuccessful()) {
+                    throw new IOException("Unable to list notifications: HTTP " + response.code());
+                }
+                for(JsonNode thread: MAPPER.readTree(response.body().byteStream())) {
+                    JsonNode subject = thread.path("subject");
+                    int prNumber = 0;
+                    Matcher pullRequestUrl = PULL_REQUEST_URL.matcher(subject.path("url").asText());
+                    if(subject.path("type").asText().equals("PullRequest") && pullRequestUrl.matches()) {
+                        prNumber = Integer.parseInt(pullRequestUrl.group(1));
+                    }
+                    notifications.add(new Notification(thread.path("id").asLong(),
+                            thread.path("repository").path("full_name").asText(),
+                            thread.path("reason").asText(),
+                            prNumber,
+                            subject.path("latest_comment_url").asText(null),
+                            parseDate(thread.path("updated_at").asText())));
+                }
+                url = nextPage(response);
+            }
+        }
+        return new Notification.Page(notifications, newLastModified, pollIntervalSeconds);
+    }
+
+    /**
+     * Marks a notification thread of the bot user as read.
+     */
+    public void markNotificationRead(long threadId) throws IOException {
+        Request request = new Request.Builder()
+                .url(apiUrl + "/notifications/threads/" + threadId)
+                .header("Authorization", credentials)
+                .patch(RequestBody.create(JSON, "{}"))
+                .build();
+        try (Response response = notificationClient.newCall(request).execute()) {
+            if(!response.isSuccessful()) {
+                throw new IOException("Unable to mark notification " + threadId + " as read: HTTP " + response.code());
+            }
+        }
+    }
+
+
+    /**
+     * Returns the issue comments of a PR which have been created or updated since the given time (inclusive).
+     * Other than {@link GHIssue#getComments()}, this only transfers the comments we haven't seen yet.
+     */
+    public List<ThreadComment> getCommentsSince(int prID, Date since) throws IOException {
+        HttpUrl url = HttpUrl.get(apiUrl + "/repos/" + repository + "/issues/" + prID + "/comments").newBuilder()
+                .addQueryParameter("since", since.toInstant().toString())
+                .addQueryParameter("per_page", "100")
+                .build();
+        List<ThreadComment> comments = new ArrayList<>();
+        while (url != null) {
+            Request request = new Request.Builder().url(url).header("Authorization", credentials).build();
+            try (Response response = directClient.newCall(request).execute()) {
+                if(!response.isSuccessful()) {
+                    throw new IOException("Unable to get comments of PR #" + prID + ": HTTP " + response.code());
+                }
+                for(JsonNode comment: MAPPER.readTree(response.body().byteStream())) {
+                    comments.add(new ThreadComment(comment.path("id").asLong(),
+                            comment.path("user").path("login").asText(),
+                            comment.path("body").asText(),
+                            parseDate(comment.path("created_at").asText()),
+                            parseDate(comment.path("updated_at").asText())));
+                }
+                url = nextPage(response);
+            }
+        }
+        return comments;
+    }
+
+    /**
+     * Replaces the body of an issue comment, using the write credentials.
+     */
+    public void updateComment(long commentId, String body) throws IOException {
+        Request request = new Request.Builder()
+                .url(apiUrl + "/repos/" + repository + "/issues/comments/" + commentId)
+                .header("Authorization", writeCredentials)
+                .patch(RequestBody.create(JSON, MAPPER.writeValueAsString(Collections.singletonMap("body", body))))
+                .build();
+        try (Response response = writeClient.newCall(request).execute()) {
+            if(!response.isSuccessful()) {
+                throw new IOException("Unable to update comment " + commentId + ": HTTP " + response.code());
+            }
+        }
+    }
+
+    /**
+     * Returns the current labels of an issue or pull request. Unchanged labels are revalidated, which costs no quota.
+     */
+    public List<String> getLabels(int prID) throws IOException {
+        HttpUrl url = HttpUrl.get(apiUrl + "/repos/" + repository + "/issues/" + prID + "/labels").newBuilder()
+                .addQueryParameter("per_page", "100")
+                .build();
+        List<String> labels = new ArrayList<>();
+        while (url != null) {
+            Request request = new Request.Builder().url(url).header("Authorization", credentials).build();
+            try (Response response = directClient.newCall(request).execute()) {
+                if(!response.isSuccessful()) {
+                    throw new IOException("Unable to get labels of PR #" + prID + ": HTTP " + response.code());
+                }
+                for(JsonNode label: MAPPER.readTree(response.body().byteStream())) {
+                    labels.add(label.path("name").asText());
+                }
+                url = nextPage(response);
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Replaces all labels of an issue or pull request with a single request, using the write credentials.
+     */
+    public void replaceLabels(int prID, Collection<String> labels) throws IOException {
+        Request request = new Request.Builder()
+                .url(apiUrl + "/repos/" + repository + "/issues/" + prID + "/labels")
+                .header("Authorization", writeCredentials)
+                .put(RequestBody.create(JSON, MAPPER.writeValueAsString(Collections.singletonMap("labels", labels))))
+                .build();
+        try (Response response = writeClient.newCall(request).execute()) {
+            if(!response.isSuccessful()) {
+                throw new IOException("Unable to set labels of PR #" + prID + ": HTTP " + response.code());
+            }
         }
     }
 
-    public Iterator<GHThread> getNewNotificationsIterator() {
-        GHNotificationStream notifications = directGitHub.listNotifications();
-        // we are blocking
-        notifications.nonBlocking(false);
-        notifications.since(0);
+    /**
+     * Counts the requests of a client by operation, such as "GET /repos/{repo}/issues/{n}/comments".
+     */
+    private Interceptor countRequests(String client) {
+        return chain -> {
+            Response response = chain.proceed(chain.request());
+            String source;
+            if(response.networkResponse() == null) {
+                source = "cache";
+            } else if(response.cacheResponse() != null) {
+                source = "conditional";
+            } else {
+                source = "network";
+            }
+            String path = chain.request().url().encodedPath();
+            REQUESTS.inc(client, operation(servedRepository(path), chain.request().method(), path), source);
+            return response;
+        };
+    }
 
-        notifications.read(false);
-        notifications.participating(false);
-        return notifications.iterator();
+    /**
+     * The served repository the path belongs to, this Github's repository if it belongs to none.
+     */
+    private String servedRepository(String path) {
+        for(String served: repositories) {
+            if(path.equals("/repos/" + served) || path.startsWith("/repos/" + served + "/")) {
+                return served;
+            }
+        }
+        return repository;
+    }
+
+    static String operation(String repository, String method, String path) {
+        String repoPath = "/repos/" + repository;
+        if(path.equals(repoPath) || path.startsWith(repoPath + "/")) {
+            path = "/repos/{repo}" + path.substring(repoPath.length());
+        }
+        return method + " " + NUMBER_SEGMENT.matcher(path).replaceAll("/{n}");
+    }
+
+    private static HttpUrl nextPage(Response response) {
+        String link = response.header("Link");
+        if(link == null) {
+            return null;
+        }
+        Matcher matcher = NEXT_LINK.matcher(link);
+        return matcher.find() ? HttpUrl.parse(matcher.group(1)) : null;
     }
 
+    private static Date parseDate(String date) {
+        return date.isEmpty() ? null : Date.from(Instant.parse(date));
+    }
 
     public GHRepository getWriteableRepository() throws IOException {
         return writeGitHub.getRepository(repository);
@@ -132,13 +521,53 @@ public class Github {
         return cachedGitHub.getUser(login);
     }
 
-    public GHPersonSet<GHUser> getCollaborators(String repo) {
-        try {
-            return writeGitHub.getRepository(repo).getCollaborators();
-        } catch (IOException e) {
-            LOG.warn("Unable to get collaborators for {}", repo);
-            return null;
+    /**
+     * Looks up a collaborator of the repository in an index, which is reloaded after gh.collaboratorsTtlMinutes.
+     *
+     * @return the login (with the case used by GitHub), or null if the user is not a collaborator
+     */
+    public String getCollaborator(String login) throws IOException {
+        return collaborators.get(repository, login);
+    }
+
+    /**
+     * Requests reviews from the given users with a single request, using the write credentials.
+     */
+    public void requestReviewers(int prID, Collection<String> logins) throws IOException {
+        Request request = new Request.Builder()
+                .url(apiUrl + "/repos/" + repository + "/pulls/" + prID + "/requested_reviewers")
+                .header("Authorization", writeCredentials)
+                .post(RequestBody.create(JSON, MAPPER.writeValueAsString(Collections.singletonMap("reviewers", logins))))
+                .build();
+        try (Response response = writeClient.newCall(request).execute()) {
+            if(!response.isSuccessful()) {
+                throw new IOException("Unable to request reviewers " + logins + " on PR #" + prID + ": HTTP " + response.code());
+            }
+        }
+    }
+
+    /**
+     * The logins of the collaborators of a repository. Listing them requires push access, so the write credentials
+     * are used.
+     */
+    private List<String> listCollaborators(String repo) throws IOException {
+        HttpUrl url = HttpUrl.get(apiUrl + "/repos/" + repo + "/collaborators").newBuilder()
+                .addQueryParameter("per_page", "100")
+                .build();
+        List<String> logins = new ArrayList<>();
+        while (url != null) {
+            Request request = new Request.Builder().url(url).header("Authorization", writeCredentials).build();
+            try (Response response = writeClient.newCall(request).execute()) {
+                if(!response.isSuccessful()) {
+                    throw new IOException("Unable to list the collaborators of " + repo + ": HTTP " + response.code());
+                }
+                for(JsonNode collaborator: MAPPER.readTree(response.body().byteStream())) {
+                    logins.add(collaborator.path("login").asText());
+                }
+                url = nextPage(response);
+            }
         }
+        return logins;
     }
 
 
@@ -0,0 +1,70 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.kohsuke.github.GHLabel;
+import org.kohsuke.github.GHRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory catalog of the labels with a given prefix in the repository, so that we don't have to look up a label
+ * before applying it. The catalog is loaded on first use and refreshed once a day.
+ */
+public class LabelCatalog {
+    private static Logger LOG = LoggerFactory.getLogger(LabelCatalog.class);
+
+    private static final long REFRESH_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final Github gh;
+    private final String prefix;
+    private final String color;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private Set<String> labels;
+    private long loadedAt;
+
+    public LabelCatalog(Github gh, String prefix, String color) {
+        this.gh = gh;
+        this.prefix = prefix;
+        this.color = color;
+    }
+
+    /**
+     * Makes sure the label exists in the repository, creating it with the color of the catalog if needed.
+     */
+    public void ensureExists(String name) throws IOException {
+        lock.lock();
+        try {
+            if(labels == null || System.currentTimeMillis() - loadedAt > REFRESH_MILLIS) {
+                load();
+            }
+            if(labels.contains(name)) {
+                return;
+            }
+            LOG.info("Label '{}' did not exist, creating it", name);
+            gh.getWriteableRepository().createLabel(name, color);
+            labels.add(name);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void load() throws IOException {
+        GHRepository repository = gh.getWriteableRepository();
+        Set<String> loaded = new HashSet<>();
+        for(GHLabel label: repository.listLabels()) {
+            if(label.getName().startsWith(prefix)) {
+                loaded.add(label.getName());
+            }
+        }
+        LOG.debug("Loaded labels {}", loaded);
+        labels = loaded;
+        loadedAt = System.currentTimeMillis();
+    }
+}
@@ -2,15 +2,20 @@ package de.robertmetzger.flink.community.flinkbot;
 
 
 import org.apache.commons.lang3.StringUtils;
-import org.kohsuke.github.GHThread;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TreeMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -21,6 +26,9 @@ import java.util.concurrent.TimeUnit;
 public class Launcher {
     private static Logger LOG = LoggerFactory.getLogger(Launcher.class);
 
+    // lanes of the pull request executor with virtual threads. Idle lanes don't hold a thread
+    private static final int VIRTUAL_LANES = 4096;
+
     public static void main(String[] args) {
         LOG.info("Launching The Flink Bot");
 
@@ -41,35 +49,199 @@ public class Launcher {
         } catch (IOException e) {
             throw new RuntimeException("Unable to load /config.properties from the CL", e);
         }
+        start(prop);
+    }
 
+    /**
+     * Starts the bot with the given configuration, in the background.
+     */
+    public static void start(Properties prop) {
         Github gh = new Github(prop);
-        String[] committers = StringUtils.split(prop.getProperty("main.committers"), ',');
-        String[] pmc = StringUtils.split(prop.getProperty("main.pmc"), ',');
-        final Flinkbot bot = new Flinkbot(gh, committers, pmc);
+        // a scan blocks for long, the roster watcher, state flushes and the cache size adaptation run separately
+        ScheduledExecutorService scanExecutor = Executors.newScheduledThreadPool(1);
+        ScheduledExecutorService maintenanceExecutor = Executors.newScheduledThreadPool(1);
+
+        File stateDir = new File(prop.getProperty("main.stateDir", "/tmp/flinkbot-state"));
+        ThreadMode threadMode = ThreadMode.fromConfig(prop.getProperty("main.threads"));
+        LOG.info("Processing pull requests on {} threads", threadMode.name().toLowerCase());
+        // the PRs of all repositories are processed by the same lanes
+        int pullRequestThreads = threadMode == ThreadMode.VIRTUAL ? VIRTUAL_LANES
+                : Integer.valueOf(prop.getProperty("main.pullRequestThreads", "4"));
+        StripedExecutor pullRequestExecutor = new StripedExecutor("Pull request processor", pullRequestThreads, threadMode);
+        int checkThreads = Integer.valueOf(prop.getProperty("main.checkThreads", "4"));
+        long checkTimeoutMillis = TimeUnit.SECONDS.toMillis(Long.valueOf(prop.getProperty("main.checkTimeoutSeconds", "30")));
+        long writeDelayMillis = Long.valueOf(prop.getProperty("main.writeDelayMillis", "3000"));
+        int checkCacheSize = Integer.valueOf(prop.getProperty("main.checkCacheSize", "10000"));
+        long checkCacheMillis = TimeUnit.MINUTES.toMillis(Long.valueOf(prop.getProperty("main.checkCacheMinutes", "60")));
+
+        List<String> repositories = getRepositories(prop);
+        Map<String, Flinkbot> bots = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<PullRequestStateStore> stateStores = new ArrayList<>();
+        List<CheckRunner> checkRunners = new ArrayList<>();
+        for(String repository: repositories) {
+            int minPRNumber = Integer.valueOf(StringUtils.defaultIfBlank(getProperty(prop, repository, "minPRNumber", "gh.minPRNumber"), "0"));
+            // all repositories share the connections and the rate limit budget
+            Github repositoryGh = gh.forRepository(repository, minPRNumber);
+            CommunityRoster roster = getRoster(prop, repository, maintenanceExecutor);
+            // a single repository keeps the state file of earlier versions
+            String suffix = repositories.size() == 1 ? "" : "-" + repository.replace('/', '_');
+            PullRequestStateStore stateStore = new PullRequestStateStore(new File(stateDir, "pull-requests" + suffix + ".json"));
+            WorkJournal journal;
+            try {
+                journal = WorkJournal.open(new File(stateDir, "journal" + suffix));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to open the journal of " + repository, e);
+            }
+            CheckRunner checkRunner = new CheckRunner(getChecks(getProperty(prop, repository, "checks", null)), checkThreads, checkTimeoutMillis,
+                    new CheckResultCache(checkCacheSize, checkCacheMillis), threadMode);
+            bots.put(repository, new Flinkbot(repositoryGh, roster, stateStore, pullRequestExecutor, checkRunner, writeDelayMillis, journal));
+            stateStores.add(stateStore);
+            checkRunners.add(checkRunner);
+            LOG.info("Serving repository {} from PR #{}", repository, minPRNumber);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOG.info("Shutting down");
+            bots.values().forEach(Flinkbot::flushWrites);
+            try {
+                pullRequestExecutor.shutdown(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            stateStores.forEach(PullRequestStateStore::flush);
+        }, "Shutdown"));
+        // updates which were accepted, but not finished before the last shutdown
+        bots.values().forEach(Flinkbot::replayJournal);
 
+        Metrics.Gauge queueSize = Metrics.gauge("flinkbot_queue_size", "Tasks waiting to be processed.", "queue");
+        queueSize.set(pullRequestExecutor::getQueueSize, "pull_requests");
+        queueSize.set(() -> checkRunners.stream().mapToInt(CheckRunner::getQueueSize).sum(), "checks");
+        String metricsPort = prop.getProperty("main.metricsPort");
+        if(StringUtils.isNotBlank(metricsPort)) {
+            try {
+                new MetricsServer(Integer.valueOf(metricsPort.trim())).start();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to start metrics server", e);
+            }
+        }
 
-        // Schedule periodic checks
+
+        // serve mentions right away
+        String webhookPort = prop.getProperty("webhook.port");
+        if(StringUtils.isNotBlank(webhookPort)) {
+            // GitHub pushes events to us, no need to poll the notifications
+            try {
+                WebhookServer webhookServer = new WebhookServer(Integer.valueOf(webhookPort.trim()),
+                        prop.getProperty("webhook.secret"), gh.getBotName(), bots);
+                queueSize.set(webhookServer::getBacklog, "webhooks");
+                webhookServer.start();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to start webhook server", e);
+            }
+        } else {
+            // the notifications of the bot user cover all repositories
+            NotificationPoller notificationPoller = new NotificationPoller(gh, bots, new File(stateDir, "notifications-cursor"));
+            queueSize.set(notificationPoller::getBacklog, "notifications");
+            notificationPoller.start();
+        }
+
+        // Schedule periodic checks. The first scan reconciles the restored state with all open PRs, it is delayed
+        // so that the mentions which came in during the restart are served first
         int checkNewPRSeconds = Integer.valueOf(prop.getProperty("main.checkNewPRSeconds"));
+        int initialScanDelaySeconds = Integer.valueOf(prop.getProperty("main.initialScanDelaySeconds", "60"));
 
-        ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
+        List<Flinkbot> scanOrder = new ArrayList<>(bots.values());
+        scanExecutor.scheduleAtFixedRate(() -> {
+            for(Flinkbot bot: scanOrder) {
+                try {
+                    // scanning is skipped while the rate limit is low, in favor of handling mentions
+                    RateLimitScheduler.runInBackground(bot::checkForNewPRs);
+                } catch (Throwable t) {
+                    LOG.warn("Error while checking for new PRs", t);
+                }
+            }
+            // the repositories take turns in being scanned first, while the shared budget is still high
+            Collections.rotate(scanOrder, -1);
+        }, initialScanDelaySeconds, checkNewPRSeconds, TimeUnit.SECONDS);
 
-        executor.scheduleAtFixedRate(() -> {
+        // the state files are rewritten as a whole, the updates in between are coalesced
+        int stateFlushSeconds = Integer.valueOf(prop.getProperty("main.stateFlushSeconds", "10"));
+        maintenanceExecutor.scheduleWithFixedDelay(() -> {
+            for(PullRequestStateStore stateStore: stateStores) {
+                try {
+                    stateStore.flush();
+                } catch (Throwable t) {
+                    LOG.warn("Error while flushing the PR state", t);
+                }
+            }
+        }, stateFlushSeconds, stateFlushSeconds, TimeUnit.SECONDS);
+
+        maintenanceExecutor.scheduleAtFixedRate(() -> {
             try {
-                bot.checkForNewPRs();
+                gh.adaptCacheSize();
             } catch (Throwable t) {
-                LOG.warn("Error while checking for new PRs", t);
+                LOG.warn("Error while adapting the cache size", t);
             }
-        }, 0, checkNewPRSeconds, TimeUnit.SECONDS);
-
-        Thread notificationProcessor = new Thread(() -> {
-            // process notifications indefinitely
-            LOG.info("Launching notifications processor");
-            Iterator<GHThread> notificationsIterator = gh.getNewNotificationsIterator();
-            bot.processBotMentions(notificationsIterator);
-            LOG.info("Shutting down notification processor ...");
-        });
-        notificationProcessor.setName("Notification processor");
-        notificationProcessor.start();
+        }, 1, 1, TimeUnit.HOURS);
+    }
 
+    /**
+     * The served repositories: gh.repos, or the single repository gh.repo.
+     */
+    private static List<String> getRepositories(Properties prop) {
+        String[] repositories = StringUtils.split(prop.getProperty("gh.repos", prop.getProperty("gh.repo")), ',');
+        if(repositories == null || repositories.length == 0) {
+            throw new RuntimeException("No repository configured in gh.repos or gh.repo");
+        }
+        List<String> result = new ArrayList<>();
+        for(String repository: repositories) {
+            result.add(repository.trim());
+        }
+        return result;
+    }
+
+    /**
+     * Returns the setting of a repository "repo.<owner/name>.<key>", falling back to the global setting.
+     */
+    private static String getProperty(Properties prop, String repository, String key, String globalKey) {
+        String value = prop.getProperty("repo." + repository + "." + key);
+        if(value != null || globalKey == null) {
+            return value;
+        }
+        return prop.getProperty(globalKey);
+    }
+
+    private static CommunityRoster getRoster(Properties prop, String repository, ScheduledExecutorService executor) {
+        String rosterFile = getProperty(prop, repository, "rosterFile", "main.rosterFile");
+        if(StringUtils.isNotBlank(rosterFile)) {
+            CommunityRoster roster;
+            try {
+                roster = CommunityRoster.fromFile(new File(rosterFile.trim()));
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to load the roster of " + repository, e);
+            }
+            roster.watch(executor, Long.valueOf(prop.getProperty("main.rosterCheckSeconds", "60")), TimeUnit.SECONDS);
+            return roster;
+        }
+        String[] committers = StringUtils.split(getProperty(prop, repository, "committers", "main.committers"), ',');
+        String[] pmc = StringUtils.split(getProperty(prop, repository, "pmc", "main.pmc"), ',');
+        return CommunityRoster.fixed(committers, pmc);
+    }
+
+    /**
+     * Selects checks by their class names, such as "PomChangesCheck,DocumentationCheck". All checks if not set.
+     */
+    private static PullRequestCheck[] getChecks(String names) {
+        if(names == null) {
+            return Flinkbot.PULL_REQUEST_CHECK;
+        }
+        List<PullRequestCheck> checks = new ArrayList<>();
+        for(String name: StringUtils.split(names, ',')) {
+            PullRequestCheck check = Arrays.stream(Flinkbot.PULL_REQUEST_CHECK)
+                    .filter(c -> c.getClass().getSimpleName().equals(name.trim()))
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException("Unknown check: " + name.trim()));
+            checks.add(check);
+        }
+        return checks.toArray(new PullRequestCheck[0]);
     }
 }
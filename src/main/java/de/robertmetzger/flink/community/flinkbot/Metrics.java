@@ -0,0 +1,292 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Counters, gauges and histograms of the bot, exposed in the Prometheus text format by the {@link MetricsServer}.
+ *
+ * Metrics are registered once by name, with a fixed set of label names. Registering a name again returns the
+ * existing metric. Updating a metric does not block.
+ */
+public class Metrics {
+    /** Buckets of the latency histograms, in seconds. */
+    private static final double[] LATENCY_BUCKETS = {0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    // sorted by name, for a stable output
+    private static final Map<String, Metric<?>> METRICS = new ConcurrentSkipListMap<>();
+
+    public static Counter counter(String name, String help, String... labelNames) {
+        return register(new Counter(name, help, labelNames));
+    }
+
+    public static Histogram histogram(String name, String help, String... labelNames) {
+        return register(new Histogram(name, help, labelNames));
+    }
+
+    public static Gauge gauge(String name, String help, String... labelNames) {
+        return register(new Gauge(name, help, labelNames));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <M extends Metric<?>> M register(M metric) {
+        Metric<?> registered = METRICS.putIfAbsent(metric.name, metric);
+        if(registered == null) {
+            return metric;
+        }
+        if(registered.getClass() != metric.getClass() || !Arrays.equals(registered.labelNames, metric.labelNames)) {
+            throw new IllegalArgumentException("Metric " + metric.name + " is already registered with a different type or labels");
+        }
+        return (M) registered;
+    }
+
+    /**
+     * The total of a counter, or the number of observations of a histogram, over all label values. 0 if the metric
+     * does not exist.
+     */
+    public static long total(String name) {
+        Metric<?> metric = METRICS.get(name);
+        long total = 0;
+        if(metric instanceof Counter) {
+            for(LongAdder child: ((Counter) metric).children.values()) {
+                total += child.sum();
+            }
+        } else if(metric instanceof Histogram) {
+            for(List<String> labelValues: metric.children.keySet()) {
+                total += ((Histogram) metric).count(labelValues.toArray(new String[0]));
+            }
+        }
+        return total;
+    }
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4).
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for(Metric<?> metric: METRICS.values()) {
+            out.append("# HELP ").append(metric.name).append(' ').append(metric.help).append('\n');
+            out.append("# TYPE ").append(metric.name).append(' ').append(metric.type()).append('\n');
+            for(Map.Entry<List<String>, ?> child: metric.children.entrySet()) {
+                metric.write(out, child.getKey());
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * A metric with a child per combination of label values.
+     */
+    private abstract static class Metric<C> {
+        final String name;
+        final String help;
+        final String[] labelNames;
+        final Map<List<String>, C> children = new ConcurrentHashMap<>();
+
+        Metric(String name, String help, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+        }
+
+        C child(String[] labelValues) {
+            return children.computeIfAbsent(labels(labelValues), values -> newChild());
+        }
+
+        List<String> labels(String[] labelValues) {
+            if(labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException(name + " requires the labels " + Arrays.toString(labelNames));
+            }
+            return Arrays.asList(labelValues);
+        }
+
+        abstract C newChild();
+
+        abstract String type();
+
+        abstract void write(StringBuilder out, List<String> labelValues);
+
+        void writeSample(StringBuilder out, String suffix, List<String> labelValues, String extraLabel, String extraValue, double value) {
+            out.append(name).append(suffix);
+            if(!labelValues.isEmpty() || extraLabel != null) {
+                out.append('{');
+                for(int i = 0; i < labelNames.length; i++) {
+                    if(i > 0) {
+                        out.append(',');
+                    }
+                    appendLabel(out, labelNames[i], labelValues.get(i));
+                }
+                if(extraLabel != null) {
+                    if(labelNames.length > 0) {
+                        out.append(',');
+                    }
+                    appendLabel(out, extraLabel, extraValue);
+                }
+                out.append('}');
+            }
+            out.append(' ').append(formatValue(value)).append('\n');
+        }
+
+        private static void appendLabel(StringBuilder out, String name, String value) {
+            out.append(name).append("=\"");
+            for(int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if(c == '\\' || c == '"') {
+                    out.append('\\').append(c);
+                } else if(c == '\n') {
+                    out.append("\\n");
+                } else {
+                    out.append(c);
+                }
+            }
+            out.append('"');
+        }
+    }
+
+    private static String formatValue(double value) {
+        if(value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        }
+        if(value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    public static class Counter extends Metric<LongAdder> {
+        Counter(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        public void inc(String... labelValues) {
+            child(labelValues).increment();
+        }
+
+        public void add(long amount, String... labelValues) {
+            child(labelValues).add(amount);
+        }
+
+        public long get(String... labelValues) {
+            LongAdder child = children.get(Arrays.asList(labelValues));
+            return child == null ? 0 : child.sum();
+        }
+
+        @Override
+        LongAdder newChild() {
+            return new LongAdder();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder out, List<String> labelValues) {
+            writeSample(out, "", labelValues, null, null, children.get(labelValues).sum());
+        }
+    }
+
+    public static class Gauge extends Metric<DoubleSupplier> {
+        Gauge(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        /**
+         * The gauge reads the value from the supplier when it is scraped.
+         */
+        public void set(DoubleSupplier value, String... labelValues) {
+            children.put(labels(labelValues), value);
+        }
+
+        @Override
+        DoubleSupplier newChild() {
+            return () -> 0;
+        }
+
+        @Override
+        String type() {
+            return "gauge";
+        }
+
+        @Override
+        void write(StringBuilder out, List<String> labelValues) {
+            writeSample(out, "", labelValues, null, null, children.get(labelValues).getAsDouble());
+        }
+    }
+
+    public static class Histogram extends Metric<Histogram.Buckets> {
+        Histogram(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        public void observe(double seconds, String... labelValues) {
+            child(labelValues).observe(seconds);
+        }
+
+        /**
+         * Observes the time since the given {@link System#nanoTime()}.
+         */
+        public void observeSince(long startNanos, String... labelValues) {
+            observe((System.nanoTime() - startNanos) / 1e9, labelValues);
+        }
+
+        public long count(String... labelValues) {
+            Buckets child = children.get(Arrays.asList(labelValues));
+            return child == null ? 0 : child.count.sum();
+        }
+
+        @Override
+        Buckets newChild() {
+            return new Buckets();
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder out, List<String> labelValues) {
+            Buckets buckets = children.get(labelValues);
+            long cumulative = 0;
+            for(int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                cumulative += buckets.counts[i].sum();
+                writeSample(out, "_bucket", labelValues, "le", formatValue(LATENCY_BUCKETS[i]), cumulative);
+            }
+            long count = buckets.count.sum();
+            writeSample(out, "_bucket", labelValues, "le", "+Inf", count);
+            writeSample(out, "_sum", labelValues, null, null, buckets.sum.sum());
+            writeSample(out, "_count", labelValues, null, null, count);
+        }
+
+        static class Buckets {
+            // not cumulative, the last one counts the observations above all buckets
+            final LongAdder[] counts = new LongAdder[LATENCY_BUCKETS.length + 1];
+            final LongAdder count = new LongAdder();
+            final DoubleAdder sum = new DoubleAdder();
+
+            Buckets() {
+                for(int i = 0; i < counts.length; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+
+            void observe(double value) {
+                int bucket = 0;
+                while (bucket < LATENCY_BUCKETS.length && value > LATENCY_BUCKETS[bucket]) {
+                    bucket++;
+                }
+                counts[bucket].increment();
+                sum.add(value);
+                count.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serves the {@link Metrics} for Prometheus on http://host:port/metrics
+ */
+public class MetricsServer {
+    private static Logger LOG = LoggerFactory.getLogger(MetricsServer.class);
+
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+
+    public MetricsServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PATH, this::handle);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Serving metrics on port {}{}", getPort(), PATH);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if(!"GET".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "text/plain; charset=utf-8", "Only GET is supported");
+                return;
+            }
+            respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", Metrics.scrape());
+        } catch (Throwable t) {
+            LOG.warn("Error while serving metrics", t);
+            respond(exchange, 500, "text/plain; charset=utf-8", "Error");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Minimal view of a notification thread of the bot user, as returned by {@link Github#getNotifications}.
+ */
+public class Notification {
+    private final long id;
+    private final String repository;
+    private final String reason;
+    private final int prNumber;
+    private final String latestCommentUrl;
+    private final Date updatedAt;
+
+    /**
+     * @param prNumber the pull request the notification is about, or 0 if it is about something else
+     */
+    public Notification(long id, String repository, String reason, int prNumber, String latestCommentUrl, Date updatedAt) {
+        this.id = id;
+        this.repository = repository;
+        this.reason = reason;
+        this.prNumber = prNumber;
+        this.latestCommentUrl = latestCommentUrl;
+        this.updatedAt = updatedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * "owner/name"
+     */
+    public String getRepository() {
+        return repository;
+    }
+
+    /**
+     * Why the bot has been notified, such as "mention".
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    public int getPrNumber() {
+        return prNumber;
+    }
+
+    public String getLatestCommentUrl() {
+        return latestCommentUrl;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return id + " (" + reason + " on " + repository + "#" + prNumber + ")";
+    }
+
+    /**
+     * The result of listing the notifications.
+     */
+    public static class Page {
+        private final List<Notification> notifications;
+        private final String lastModified;
+        private final int pollIntervalSeconds;
+
+        public Page(List<Notification> notifications, String lastModified, int pollIntervalSeconds) {
+            this.notifications = notifications;
+            this.lastModified = lastModified;
+            this.pollIntervalSeconds = pollIntervalSeconds;
+        }
+
+        /**
+         * The unread notifications, or null if nothing changed since the previous listing.
+         */
+        public List<Notification> getNotifications() {
+            return notifications;
+        }
+
+        /**
+         * The Last-Modified value for the next listing.
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * How long GitHub asks clients to wait before polling again (X-Poll-Interval).
+         */
+        public int getPollIntervalSeconds() {
+            return pollIntervalSeconds;
+        }
+    }
+}
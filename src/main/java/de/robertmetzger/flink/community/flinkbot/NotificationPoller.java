@@ -0,0 +1,210 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the notifications of the bot user and hands the mentions to the bots of their repositories.
+ *
+ * Polling follows GitHub's rules for the notifications API: the poller waits for X-Poll-Interval between two polls,
+ * and sends the Last-Modified value of the previous poll, so that a poll without news is answered with 304 and does
+ * not cost quota. Only the notifications updated after a cursor are listed. The cursor is persisted, so that a
+ * restart does not list all unread notifications again. A failed poll is retried with a backoff, the poller never
+ * stops on its own.
+ */
+public class NotificationPoller {
+    private static Logger LOG = LoggerFactory.getLogger(NotificationPoller.class);
+
+    private static final Metrics.Counter POLLS = Metrics.counter("flinkbot_notification_polls_total",
+            "Polls of the notifications by result: changed, unchanged (304, free of quota) or failed.", "result");
+
+    // notifications can show up in the listing a while after their update time
+    static final long CURSOR_LAG_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final Github gh;
+    private final Map<String, Flinkbot> bots;
+    // null if the cursor is not persisted
+    private final File cursorFile;
+
+    // only accessed by the polling thread
+    private Date since;
+    private String lastModified;
+    private int pollIntervalSeconds = 60;
+    private int failures;
+
+    // notifications which have been listed, but not handed to their bots and marked as read yet
+    private volatile int backlog;
+
+    private volatile Thread thread;
+
+    /**
+     * @param bots the bots by repository ("owner/name"). Notifications of other repositories are marked as read.
+     * @param cursorFile the cursor is persisted in this file
+     */
+    public NotificationPoller(Github gh, Map<String, Flinkbot> bots, File cursorFile) {
+        this.gh = gh;
+        this.bots = bots;
+        this.cursorFile = cursorFile;
+        this.since = readCursor(cursorFile);
+    }
+
+    public synchronized void start() {
+        if(thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "Notification poller");
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        if(thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * The notifications updated after this time are listed.
+     */
+    Date getCursor() {
+        return since;
+    }
+
+    /**
+     * Number of notifications which have been listed, but not processed yet. Notifications which failed are counted
+     * until they have been processed on a later poll.
+     */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    private void run() {
+        LOG.info("Polling notifications updated after {}", since);
+        while (thread == Thread.currentThread()) {
+            long delayMillis;
+            try {
+                delayMillis = poll();
+                failures = 0;
+            } catch (Throwable t) {
+                POLLS.inc("failed");
+                failures++;
+                delayMillis = Math.min(MAX_BACKOFF_MILLIS, TimeUnit.SECONDS.toMillis(pollIntervalSeconds) << Math.min(failures, 10));
+                LOG.warn("Error while polling notifications, retrying in {} seconds", delayMillis / 1000, t);
+            }
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        LOG.info("Stopped polling notifications");
+    }
+
+    /**
+     * Polls the notifications once and hands them to the bots.
+     *
+     * @return the time to wait before the next poll
+     */
+    long poll() throws IOException {
+        long start = System.currentTimeMillis();
+        Notification.Page page = gh.getNotifications(since, lastModified);
+        pollIntervalSeconds = Math.max(1, page.getPollIntervalSeconds());
+        long delayMillis = TimeUnit.SECONDS.toMillis(pollIntervalSeconds);
+        if(page.getNotifications() == null) {
+            POLLS.inc("unchanged");
+            return delayMillis;
+        }
+        POLLS.inc("changed");
+
+        List<Notification> notifications = new ArrayList<>(page.getNotifications());
+        notifications.sort(Comparator.comparing(Notification::getUpdatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+        long cursor = start - CURSOR_LAG_MILLIS;
+        boolean allHandled = true;
+        // the notifications which fail stay in the backlog
+        backlog = notifications.size();
+        for(Notification notification: notifications) {
+            if(handle(notification)) {
+                backlog--;
+            } else {
+                allHandled = false;
+                // list the notification again
+                if(notification.getUpdatedAt() != null) {
+                    cursor = Math.min(cursor, notification.getUpdatedAt().getTime() - 1000);
+                }
+            }
+        }
+        // without Last-Modified, the next poll lists the notifications which have not been handled again
+        lastModified = allHandled ? page.getLastModified() : null;
+        if(cursor > since.getTime()) {
+            since = new Date(cursor);
+            writeCursor();
+        }
+        return delayMillis;
+    }
+
+    /**
+     * @return false if the notification has not been handed to its bot, or could not be marked as read
+     */
+    private boolean handle(Notification notification) {
+        try {
+            Flinkbot bot = bots.get(notification.getRepository());
+            if(bot != null && notification.getReason().equals("mention") && notification.getPrNumber() > 0) {
+                LOG.info("Found a mention on PR #{} of {}", notification.getPrNumber(), notification.getRepository());
+                // the update is journaled before the notification is acknowledged
+                bot.schedulePullRequestUpdate(notification.getPrNumber(), Flinkbot.getCommentId(notification.getLatestCommentUrl()), false);
+            } else {
+                LOG.debug("Marking notification {} as read", notification);
+            }
+            gh.markNotificationRead(notification.getId());
+            return true;
+        } catch (Throwable t) {
+            LOG.warn("Error while processing notification " + notification, t);
+            return false;
+        }
+    }
+
+    private static Date readCursor(File cursorFile) {
+        if(cursorFile != null && cursorFile.exists()) {
+            try {
+                String cursor = new String(Files.readAllBytes(cursorFile.toPath()), StandardCharsets.UTF_8).trim();
+                return Date.from(Instant.parse(cursor));
+            } catch (IOException | DateTimeParseException e) {
+                LOG.warn("Unable to read the notification cursor from {}, listing all notifications", cursorFile, e);
+            }
+        }
+        return new Date(0);
+    }
+
+    private void writeCursor() {
+        if(cursorFile == null) {
+            return;
+        }
+        try {
+            File parent = cursorFile.getAbsoluteFile().getParentFile();
+            if(!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            File tmp = new File(parent, cursorFile.getName() + ".tmp");
+            Files.write(tmp.toPath(), since.toInstant().toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), cursorFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to persist the notification cursor to {}", cursorFile, e);
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package de.robertmetzger.flink.community.flinkbot;
 
-import org.kohsuke.github.GHObject;
 import org.kohsuke.github.GHPullRequest;
 
 import java.util.List;
 
 public interface PullRequestCheck {
-    String runCheck(GHPullRequest pullRequest, List<GHObject> comments);
+    /**
+     * @return a warning to show in the tracking comment, or null if the pull request passes the check.
+     */
+    String runCheck(PullRequestContext context);
+
+    /**
+     * Called before the check runs on many pull requests at once, to fetch what it needs in bulk.
+     */
+    default void prefetch(List<GHPullRequest> pullRequests) {
+    }
 }
@@ -0,0 +1,138 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.kohsuke.github.GHObject;
+import org.kohsuke.github.GHPullRequest;
+import org.kohsuke.github.GHPullRequestCommitDetail;
+import org.kohsuke.github.GHPullRequestFileDetail;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Everything the {@link PullRequestCheck}s of a single evaluation of a pull request need to know about it.
+ *
+ * The file list and the commits are fetched lazily, page by page, and at most once: all checks share the pages
+ * fetched so far. A check which stops iterating early saves the requests for the remaining pages.
+ */
+public class PullRequestContext {
+    private final GHPullRequest pullRequest;
+    private final List<GHObject> comments;
+    private final MemoizedIterable<GHPullRequestFileDetail> files;
+    private final MemoizedIterable<GHPullRequestCommitDetail> commits;
+
+    public PullRequestContext(GHPullRequest pullRequest, List<GHObject> comments) {
+        this.pullRequest = pullRequest;
+        this.comments = comments;
+        this.files = new MemoizedIterable<>(() -> pullRequest.listFiles().iterator());
+        this.commits = new MemoizedIterable<>(() -> pullRequest.listCommits().iterator());
+    }
+
+    public GHPullRequest getPullRequest() {
+        return pullRequest;
+    }
+
+    public int getNumber() {
+        return pullRequest.getNumber();
+    }
+
+    public String getTitle() {
+        return pullRequest.getTitle();
+    }
+
+    public String getHeadSha() {
+        return pullRequest.getHead().getSha();
+    }
+
+    /**
+     * Comments and reviews of the pull request. Empty for newly opened pull requests.
+     */
+    public List<GHObject> getComments() {
+        return comments;
+    }
+
+    public Iterable<GHPullRequestFileDetail> getFiles() {
+        return files;
+    }
+
+    public Stream<GHPullRequestFileDetail> files() {
+        return StreamSupport.stream(files.spliterator(), false);
+    }
+
+    public Iterable<GHPullRequestCommitDetail> getCommits() {
+        return commits;
+    }
+
+    public Stream<GHPullRequestCommitDetail> commits() {
+        return StreamSupport.stream(commits.spliterator(), false);
+    }
+
+    /**
+     * Iterable which pulls elements from a single underlying (paged) iterator, and remembers them for all further
+     * iterations. Iterators may be used concurrently from multiple threads.
+     */
+    private static class MemoizedIterable<T> implements Iterable<T> {
+        private final Supplier<Iterator<T>> source;
+        private final ReentrantLock lock = new ReentrantLock();
+        // guarded by lock
+        private final List<T> fetched = new ArrayList<>();
+        private Iterator<T> sourceIterator;
+
+        MemoizedIterable(Supplier<Iterator<T>> source) {
+            this.source = source;
+        }
+
+        private boolean isAvailable(int index) {
+            lock.lock();
+            try {
+                if(index < fetched.size()) {
+                    return true;
+                }
+                if(sourceIterator == null) {
+                    sourceIterator = source.get();
+                }
+                if(sourceIterator.hasNext()) {
+                    fetched.add(sourceIterator.next());
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private T get(int index) {
+            lock.lock();
+            try {
+                return fetched.get(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return isAvailable(index);
+                }
+
+                @Override
+                public T next() {
+                    if(!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return get(index++);
+                }
+            };
+        }
+    }
+}
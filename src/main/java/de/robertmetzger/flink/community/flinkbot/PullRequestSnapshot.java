@@ -0,0 +1,54 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.List;
+
+/**
+ * What the scan for new pull requests needs to know about an open pull request, as returned by the bulk query in
+ * {@link Github#getPullRequestSnapshots()}.
+ */
+public class PullRequestSnapshot {
+    private final int number;
+    private final String headSha;
+    private final List<String> labels;
+    private final List<ThreadComment> botComments;
+    private final boolean allCommentsFetched;
+
+    public PullRequestSnapshot(int number, String headSha, List<String> labels, List<ThreadComment> botComments, boolean allCommentsFetched) {
+        this.number = number;
+        this.headSha = headSha;
+        this.labels = labels;
+        this.botComments = botComments;
+        this.allCommentsFetched = allCommentsFetched;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * The comments of the bot among the first comments of the pull request.
+     */
+    public List<ThreadComment> getBotComments() {
+        return botComments;
+    }
+
+    /**
+     * Whether the bot comments are complete. If not, the tracking comment might be further down in the thread.
+     */
+    public boolean isAllCommentsFetched() {
+        return allCommentsFetched;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + number + " (sha=" + headSha + ", labels=" + labels + ", bot comments=" + botComments.size() + ")";
+    }
+}
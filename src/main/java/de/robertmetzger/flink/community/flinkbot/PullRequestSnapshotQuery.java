@@ -0,0 +1,147 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Fetches the {@link PullRequestSnapshot}s of all open pull requests with the GitHub GraphQL API: 100 pull requests
+ * per request, including their labels and first comments, instead of a REST request per pull request.
+ *
+ * The pull requests are queried from the newest to the oldest, so that the query stops at the minimum PR number.
+ */
+public class PullRequestSnapshotQuery {
+    private static Logger LOG = LoggerFactory.getLogger(PullRequestSnapshotQuery.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+
+    static final int PAGE_SIZE = 100;
+    // the tracking comment is one of the first comments of a PR
+    static final int COMMENTS = 10;
+
+    private static final String QUERY = "query($owner: String!, $name: String!, $cursor: String) {\n" +
+            "  repository(owner: $owner, name: $name) {\n" +
+            "    pullRequests(states: OPEN, first: " + PAGE_SIZE + ", after: $cursor, orderBy: {field: CREATED_AT, direction: DESC}) {\n" +
+            "      pageInfo { hasNextPage endCursor }\n" +
+            "      nodes {\n" +
+            "        number\n" +
+            "        headRefOid\n" +
+            "        labels(first: 50) { nodes { name } }\n" +
+            "        comments(first: " + COMMENTS + ") {\n" +
+            "          totalCount\n" +
+            "          nodes { databaseId author { login } body createdAt updatedAt }\n" +
+            "        }\n" +
+            "      }\n" +
+            "    }\n" +
+            "  }\n" +
+            "}";
+
+    private final OkHttpClient client;
+    private final String url;
+    private final String credentials;
+
+    /**
+     * @param url the GraphQL endpoint, such as https://api.github.com/graphql
+     * @param credentials the value of the Authorization header
+     */
+    public PullRequestSnapshotQuery(OkHttpClient client, String url, String credentials) {
+        this.client = client;
+        this.url = url;
+        this.credentials = credentials;
+    }
+
+    /**
+     * @param repository "owner/name"
+     * @param minPRNumber pull requests with a lower number are skipped
+     * @param botName the comments of this user are contained in the snapshots
+     */
+    public List<PullRequestSnapshot> fetch(String repository, int minPRNumber, String botName) throws IOException {
+        String[] ownerAndName = repository.split("/", 2);
+        List<PullRequestSnapshot> snapshots = new ArrayList<>();
+        String cursor = null;
+        int requests = 0;
+        do {
+            ObjectNode variables = MAPPER.createObjectNode();
+            variables.put("owner", ownerAndName[0]);
+            variables.put("name", ownerAndName[1]);
+            variables.put("cursor", cursor);
+            JsonNode pullRequests = query(variables).path("repository").path("pullRequests");
+            requests++;
+
+            boolean belowMinimum = false;
+            for(JsonNode pr: pullRequests.path("nodes")) {
+                int number = pr.path("number").asInt();
+                if(number < minPRNumber) {
+                    belowMinimum = true;
+                    continue;
+                }
+                snapshots.add(toSnapshot(pr, number, botName));
+            }
+            JsonNode pageInfo = pullRequests.path("pageInfo");
+            cursor = !belowMinimum && pageInfo.path("hasNextPage").asBoolean() ? pageInfo.path("endCursor").asText() : null;
+        } while (cursor != null);
+        LOG.debug("Fetched {} pull requests with {} GraphQL requests", snapshots.size(), requests);
+        return snapshots;
+    }
+
+    private static PullRequestSnapshot toSnapshot(JsonNode pr, int number, String botName) {
+        List<String> labels = new ArrayList<>();
+        for(JsonNode label: pr.path("labels").path("nodes")) {
+            labels.add(label.path("name").asText());
+        }
+        JsonNode comments = pr.path("comments");
+        List<ThreadComment> botComments = new ArrayList<>();
+        for(JsonNode comment: comments.path("nodes")) {
+            // the author of comments by deleted users is null
+            String author = comment.path("author").path("login").asText();
+            if(author.equals(botName)) {
+                botComments.add(new ThreadComment(comment.path("databaseId").asLong(), author,
+                        comment.path("body").asText(),
+                        parseDate(comment.path("createdAt").asText()),
+                        parseDate(comment.path("updatedAt").asText())));
+            }
+        }
+        boolean allCommentsFetched = comments.path("totalCount").asInt() <= comments.path("nodes").size();
+        String headSha = pr.path("headRefOid").isTextual() ? pr.path("headRefOid").asText() : null;
+        return new PullRequestSnapshot(number, headSha, labels, botComments, allCommentsFetched);
+    }
+
+    private JsonNode query(ObjectNode variables) throws IOException {
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("query", QUERY);
+        body.set("variables", variables);
+        Request request = new Request.Builder()
+                .url(url)
+                .header("Authorization", credentials)
+                .post(RequestBody.create(JSON, MAPPER.writeValueAsBytes(body)))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            if(!response.isSuccessful()) {
+                throw new IOException("GraphQL query failed: HTTP " + response.code());
+            }
+            JsonNode result = MAPPER.readTree(response.body().byteStream());
+            if(result.has("errors")) {
+                throw new IOException("GraphQL query failed: " + result.path("errors"));
+            }
+            return result.path("data");
+        }
+    }
+
+    private static Date parseDate(String date) {
+        return date.isEmpty() ? null : Date.from(Instant.parse(date));
+    }
+}
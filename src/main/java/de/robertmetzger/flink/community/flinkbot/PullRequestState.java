@@ -0,0 +1,171 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * What the bot remembers about a single pull request between runs.
+ */
+public class PullRequestState {
+    private int number;
+    private long trackingCommentId;
+    private String headSha;
+    private String label;
+    // of the review state and checks shown in the tracking comment
+    private Integer renderedFingerprint;
+    private Integer renderedTitleHash;
+
+    // folded review state, valid for all comments up to the cursor
+    private ReviewState reviewState;
+    private long lastCommentId;
+    private long lastReviewId;
+    private Date cursor;
+
+    // lower case logins of the users the bot has requested a review from, while their attention is required
+    private Set<String> requestedReviewers = new HashSet<>();
+
+    public PullRequestState() {
+        // for Jackson
+    }
+
+    public PullRequestState(int number) {
+        this.number = number;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public void setNumber(int number) {
+        this.number = number;
+    }
+
+    public long getTrackingCommentId() {
+        return trackingCommentId;
+    }
+
+    public void setTrackingCommentId(long trackingCommentId) {
+        this.trackingCommentId = trackingCommentId;
+    }
+
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    public void setHeadSha(String headSha) {
+        this.headSha = headSha;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Fingerprint of the content of the tracking comment, as written by the bot. Null if unknown.
+     */
+    public Integer getRenderedFingerprint() {
+        return renderedFingerprint;
+    }
+
+    public void setRenderedFingerprint(Integer renderedFingerprint) {
+        this.renderedFingerprint = renderedFingerprint;
+    }
+
+    /**
+     * Hash of the title of the PR the tracking comment has been rendered for, null if unknown.
+     */
+    public Integer getRenderedTitleHash() {
+        return renderedTitleHash;
+    }
+
+    public void setRenderedTitleHash(Integer renderedTitleHash) {
+        this.renderedTitleHash = renderedTitleHash;
+    }
+
+    public ReviewState getReviewState() {
+        return reviewState;
+    }
+
+    public void setReviewState(ReviewState reviewState) {
+        this.reviewState = reviewState;
+    }
+
+    /**
+     * Id of the newest issue comment which has been folded into the review state.
+     */
+    public long getLastCommentId() {
+        return lastCommentId;
+    }
+
+    public void setLastCommentId(long lastCommentId) {
+        this.lastCommentId = lastCommentId;
+    }
+
+    /**
+     * Id of the newest review which has been folded into the review state.
+     */
+    public long getLastReviewId() {
+        return lastReviewId;
+    }
+
+    public void setLastReviewId(long lastReviewId) {
+        this.lastReviewId = lastReviewId;
+    }
+
+    /**
+     * Latest update time of the folded issue comments. Comments updated after this time are new or edited.
+     */
+    public Date getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(Date cursor) {
+        this.cursor = cursor;
+    }
+
+    public Set<String> getRequestedReviewers() {
+        return requestedReviewers;
+    }
+
+    public void setRequestedReviewers(Set<String> requestedReviewers) {
+        this.requestedReviewers = requestedReviewers;
+    }
+
+    /**
+     * Forget the folded review state, so that the next update rebuilds it from all comments.
+     */
+    public void resetReviewState() {
+        this.reviewState = null;
+        this.lastCommentId = 0;
+        this.lastReviewId = 0;
+        this.cursor = null;
+    }
+
+    /**
+     * A deep copy, which does not change with the stored state.
+     */
+    public PullRequestState copy() {
+        PullRequestState copy = new PullRequestState(number);
+        copy.trackingCommentId = trackingCommentId;
+        copy.headSha = headSha;
+        copy.label = label;
+        copy.renderedFingerprint = renderedFingerprint;
+        copy.renderedTitleHash = renderedTitleHash;
+        copy.reviewState = reviewState == null ? null : reviewState.copy();
+        copy.lastCommentId = lastCommentId;
+        copy.lastReviewId = lastReviewId;
+        copy.cursor = cursor == null ? null : new Date(cursor.getTime());
+        copy.requestedReviewers = new HashSet<>(requestedReviewers);
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + number + " (comment=" + trackingCommentId + ", sha=" + headSha + ", label=" + label + ")";
+    }
+}
@@ -0,0 +1,166 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the pull requests the bot has already seen (tracking comment id, head sha and review label).
+ *
+ * The state is kept in memory and written to a JSON file on {@link #flush()}, so that a restarted bot does not
+ * need to scan the comments of all open pull requests again. The file is rewritten as a whole, so it is flushed
+ * periodically (and after a scan), not after every update. Updates which are lost in a crash are replayed from the
+ * {@link WorkJournal}, or rebuilt from the comments.
+ */
+public class PullRequestStateStore {
+    private static Logger LOG = LoggerFactory.getLogger(PullRequestStateStore.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * File to persist the state to. null for a purely in-memory store.
+     */
+    private final File file;
+    private final ReentrantLock lock = new ReentrantLock();
+    // serializes the writes of the file, see ThreadMode
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // guarded by lock
+    private final TreeMap<Integer, PullRequestState> states = new TreeMap<>();
+    private boolean dirty = false;
+
+    public PullRequestStateStore(File file) {
+        this.file = file;
+        if(file != null && file.exists()) {
+            try {
+                Collection<PullRequestState> loaded = MAPPER.readValue(file, new TypeReference<ArrayList<PullRequestState>>() {});
+                for(PullRequestState state: loaded) {
+                    states.put(state.getNumber(), state);
+                }
+                LOG.info("Restored state of {} pull requests from {}", states.size(), file);
+            } catch (IOException e) {
+                LOG.warn("Unable to read pull request state from {}. Starting with an empty state", file, e);
+            }
+        }
+    }
+
+    public static PullRequestStateStore inMemory() {
+        return new PullRequestStateStore(null);
+    }
+
+    public boolean contains(int number) {
+        lock.lock();
+        try {
+            return states.containsKey(number);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a copy of the state of the given PR, or null if the PR is unknown. Use {@link #update} for changes.
+     */
+    public PullRequestState get(int number) {
+        lock.lock();
+        try {
+            PullRequestState state = states.get(number);
+            return state == null ? null : state.copy();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates or updates the state of a PR. Changes become durable with the next {@link #flush()}.
+     */
+    public void update(int number, Consumer<PullRequestState> updater) {
+        lock.lock();
+        try {
+            PullRequestState state = states.computeIfAbsent(number, PullRequestState::new);
+            updater.accept(state);
+            dirty = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forget all PRs which are not in the given set (for example because they got closed).
+     */
+    public void retainAll(Set<Integer> numbers) {
+        lock.lock();
+        try {
+            if(states.keySet().retainAll(numbers)) {
+                dirty = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return states.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes the state to disk, if it has changed since the last flush. The state is serialized under the lock, but
+     * written without holding it, so that updates don't wait for the disk. A flush which waited for another one only
+     * writes if there have been changes meanwhile.
+     */
+    public void flush() {
+        if(file == null) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            byte[] serialized;
+            lock.lock();
+            try {
+                if(!dirty) {
+                    return;
+                }
+                serialized = MAPPER.writeValueAsBytes(new ArrayList<>(states.values()));
+                dirty = false;
+            } finally {
+                lock.unlock();
+            }
+            File parent = file.getAbsoluteFile().getParentFile();
+            if(!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            // write to a temporary file first, so that a crash does not leave a corrupted state behind
+            File tmp = new File(parent, file.getName() + ".tmp");
+            Files.write(tmp.toPath(), serialized);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Unable to persist pull request state to {}", file, e);
+            // retried with the next flush
+            lock.lock();
+            try {
+                dirty = true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Schedules the requests to GitHub according to the rate limit of the credentials they are using.
+ *
+ * The remaining budget of every credential is tracked from the X-RateLimit-* headers of the responses, so that
+ * we never need to ask GitHub for it. The most recent response (by its Date) tells the budget; between two responses,
+ * every request which is sent is accounted for, except conditional requests, since GitHub does not charge for
+ * answering them with 304 Not Modified. Requests are either interactive (handling mentions, writing comments) or
+ * background work (scanning for new PRs). Once the budget drops to the reserve, background requests fail with a
+ * {@link DeferredException} until the rate limit resets, so that the remaining requests are left for interactive
+ * work. Background work should check {@link #isDeferred(String)} before it starts, instead of failing halfway.
+ * Interactive requests only wait if the budget is exhausted, instead of failing with HTTP 403.
+ *
+ * The number of concurrent requests per credential is limited as well, to stay below GitHub's secondary rate limits
+ * no matter how many threads make requests (see {@link ThreadMode#VIRTUAL}). The limit shrinks with the remaining
+ * budget, so that a burst of requests does not use up the rest of the budget at once.
+ *
+ * The priority is a property of the calling thread, see {@link #runInBackground(Runnable)}.
+ */
+public class RateLimitScheduler {
+    private static Logger LOG = LoggerFactory.getLogger(RateLimitScheduler.class);
+
+    public enum Priority {
+        INTERACTIVE, BACKGROUND
+    }
+
+    private static final Metrics.Gauge REMAINING = Metrics.gauge("flinkbot_github_rate_limit_remaining",
+            "Remaining requests of the credential in the current rate limit window, -1 if unknown.", "credential");
+
+    private static final ThreadLocal<Priority> PRIORITY = ThreadLocal.withInitial(() -> Priority.INTERACTIVE);
+
+    /**
+     * A background request which has not been sent, because the rate limit is low.
+     */
+    public static class DeferredException extends IOException {
+        DeferredException(String message) {
+            super(message);
+        }
+    }
+
+    public interface IOAction<T> {
+        T run() throws IOException;
+    }
+
+    private final int backgroundReserve;
+    private final int maxConcurrentRequests;
+    private final Map<String, Budget> budgets = new ConcurrentHashMap<>();
+
+    /**
+     * @param backgroundReserve number of requests per credential and hour which are reserved for interactive work.
+     */
+    public RateLimitScheduler(int backgroundReserve) {
+        this(backgroundReserve, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxConcurrentRequests number of requests per credential which may be in flight at the same time
+     */
+    public RateLimitScheduler(int backgroundReserve, int maxConcurrentRequests) {
+        this.backgroundReserve = backgroundReserve;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    /**
+     * Runs the given action with background priority on the current thread.
+     */
+    public static void runInBackground(Runnable action) {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(Priority.BACKGROUND);
+        try {
+            action.run();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    /**
+     * Runs the given action with interactive priority on the current thread, for the writes of background work.
+     */
+    public static <T> T runInteractive(IOAction<T> action) throws IOException {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(Priority.INTERACTIVE);
+        try {
+            return action.run();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    public static Priority currentPriority() {
+        return PRIORITY.get();
+    }
+
+    /**
+     * Wraps the action to run with the priority of the current thread, for handing it to another thread.
+     */
+    public static <T> Callable<T> withCurrentPriority(Callable<T> action) {
+        Priority priority = PRIORITY.get();
+        return () -> {
+            Priority previous = PRIORITY.get();
+            PRIORITY.set(priority);
+            try {
+                return action.call();
+            } finally {
+                PRIORITY.set(previous);
+            }
+        };
+    }
+
+    /**
+     * Returns an OkHttp network interceptor which schedules all requests made with the given credential.
+     */
+    public Interceptor interceptor(String credential) {
+        Budget budget = getBudget(credential);
+        return chain -> {
+            Priority priority = PRIORITY.get();
+            Request request = chain.request();
+            boolean conditional = request.header("If-None-Match") != null || request.header("If-Modified-Since") != null;
+            try {
+                if(!budget.acquire(priority, !conditional)) {
+                    throw new DeferredException("Rate limit of " + credential + " low, deferring " + priority + " request");
+                }
+                budget.enter();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the rate limit of " + credential);
+            }
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } finally {
+                budget.exit();
+            }
+            String limit = response.header("X-RateLimit-Limit");
+            String remaining = response.header("X-RateLimit-Remaining");
+            String reset = response.header("X-RateLimit-Reset");
+            if(limit != null && remaining != null && reset != null) {
+                try {
+                    Date date = response.headers().getDate("Date");
+                    budget.update(Integer.parseInt(limit), Integer.parseInt(remaining), Long.parseLong(reset),
+                            date == null ? System.currentTimeMillis() : date.getTime());
+                } catch (NumberFormatException e) {
+                    LOG.debug("Invalid rate limit headers: {} {} {}", limit, remaining, reset);
+                }
+            }
+            return response;
+        };
+    }
+
+    /**
+     * Remaining requests of the credential in the current rate limit window, or -1 if unknown.
+     */
+    public int getRemaining(String credential) {
+        return getBudget(credential).getRemaining();
+    }
+
+    /**
+     * @return true if background requests with the credential are deferred until the rate limit resets
+     */
+    public boolean isDeferred(String credential) {
+        return getBudget(credential).isDeferred();
+    }
+
+    Budget getBudget(String credential) {
+        return budgets.computeIfAbsent(credential, name -> {
+            Budget budget = new Budget(name, backgroundReserve, maxConcurrentRequests);
+            REMAINING.set(budget::getRemaining, String.valueOf(name));
+            return budget;
+        });
+    }
+
+    static class Budget {
+        private final String name;
+        private final int backgroundReserve;
+        private final int maxConcurrentRequests;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition updated = lock.newCondition();
+        private final Condition released = lock.newCondition();
+        // guarded by lock
+        private int limit = -1;
+        private int remaining = -1;
+        private long resetMillis;
+        // the Date of the response which told the remaining budget
+        private long updatedMillis;
+        private int inFlight;
+
+        Budget(String name, int backgroundReserve, int maxConcurrentRequests) {
+            this.name = name;
+            this.backgroundReserve = backgroundReserve;
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        /**
+         * Waits until the request may be sent, see {@link #getConcurrencyLimit()}.
+         */
+        void enter() throws InterruptedException {
+            lock.lock();
+            try {
+                while (inFlight >= concurrencyLimit()) {
+                    released.await();
+                }
+                inFlight++;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void exit() {
+            lock.lock();
+            try {
+                inFlight--;
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * The number of requests which may be in flight at the same time: the maximum while the budget is unknown or
+         * full, and proportionally fewer the less of the budget remains.
+         */
+        int getConcurrencyLimit() {
+            lock.lock();
+            try {
+                return concurrencyLimit();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // guarded by lock
+        private int concurrencyLimit() {
+            if(remaining < 0 || limit <= 0 || System.currentTimeMillis() >= resetMillis) {
+                return maxConcurrentRequests;
+            }
+            long scaled = (long) maxConcurrentRequests * remaining / limit;
+            return (int) Math.max(1, Math.min(maxConcurrentRequests, scaled));
+        }
+
+        /**
+         * Accounts for a request. Interactive requests wait while the budget is exhausted, background requests never
+         * wait.
+         *
+         * @return false if the request is a background request and has to be deferred until the rate limit resets
+         */
+        boolean acquire(Priority priority) throws InterruptedException {
+            return acquire(priority, true);
+        }
+
+        /**
+         * @param charged false for conditional requests, which GitHub does not charge if the resource is unchanged
+         */
+        boolean acquire(Priority priority, boolean charged) throws InterruptedException {
+            lock.lock();
+            try {
+                boolean waiting = false;
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    if(remaining < 0 || now >= resetMillis) {
+                        // unknown, or a new rate limit window started
+                        return true;
+                    }
+                    if(remaining > reserve(priority)) {
+                        // optimistically account for the request, until its response tells us the actual budget
+                        if(charged) {
+                            remaining--;
+                        }
+                        return true;
+                    }
+                    if(priority == Priority.BACKGROUND) {
+                        LOG.debug("Rate limit of {} low ({} of {} remaining). Deferring background request for {} seconds",
+                                name, remaining, limit, (resetMillis - now) / 1000);
+                        return false;
+                    }
+                    if(!waiting) {
+                        LOG.info("Rate limit of {} exhausted. Waiting {} seconds", name, (resetMillis - now) / 1000);
+                        waiting = true;
+                    }
+                    updated.await(resetMillis - now, TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean isDeferred() {
+            lock.lock();
+            try {
+                return remaining >= 0 && System.currentTimeMillis() < resetMillis && remaining <= reserve(Priority.BACKGROUND);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // guarded by lock
+        private int reserve(Priority priority) {
+            // never reserve more than a fraction of the budget for interactive work
+            return priority == Priority.BACKGROUND ? Math.min(backgroundReserve, limit / 2) : 0;
+        }
+
+        void update(int limit, int remaining, long resetEpochSeconds) {
+            update(limit, remaining, resetEpochSeconds, System.currentTimeMillis());
+        }
+
+        /**
+         * Takes the budget reported by a response, unless a more recent response has been seen already.
+         *
+         * @param dateMillis the Date of the response
+         */
+        void update(int limit, int remaining, long resetEpochSeconds, long dateMillis) {
+            lock.lock();
+            try {
+                long resetMillis = resetEpochSeconds * 1000;
+                if(resetMillis < this.resetMillis || (resetMillis == this.resetMillis && dateMillis < updatedMillis)) {
+                    // response of a request from the previous window, or overtaken by a more recent response
+                    return;
+                }
+                this.limit = limit;
+                this.remaining = remaining;
+                this.resetMillis = resetMillis;
+                this.updatedMillis = dateMillis;
+                updated.signalAll();
+                // the concurrency limit may have grown
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int getRemaining() {
+            lock.lock();
+            try {
+                return System.currentTimeMillis() >= resetMillis ? -1 : remaining;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
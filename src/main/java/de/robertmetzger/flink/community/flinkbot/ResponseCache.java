@@ -0,0 +1,186 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import okhttp3.Cache;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The HTTP cache shared by the GitHub clients.
+ *
+ * GitHub does not count conditional requests which are answered with "304 Not Modified" against the rate limit.
+ * Clients which always need the latest data (see {@link #revalidate()}) therefore don't bypass the cache, but
+ * revalidate every cached response with its ETag / Last-Modified. Unchanged resources are then served from the
+ * cache without costing quota.
+ *
+ * The size of the cache adapts to the working set: OkHttp can not resize a cache while it is open, so
+ * {@link #adaptSize()} decides on the size for the next start, which is remembered next to the cache directory.
+ */
+public class ResponseCache {
+    private static Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+
+    private static final long MB = 1024 * 1024;
+    // remembered URLs, to detect responses which have been evicted from the cache
+    private static final int MAX_REMEMBERED_URLS = 100_000;
+
+    private static final Metrics.Counter RESULTS = Metrics.counter("flinkbot_github_cache_requests_total",
+            "Cacheable requests to GitHub by client and result: hit, revalidated (304), changed, miss or evicted (cached before).",
+            "client", "result");
+
+    public enum Result {
+        /** Served from the cache, without a request. */
+        HIT,
+        /** Conditional request, answered with 304. Free of quota. */
+        REVALIDATED,
+        /** Conditional request, the resource changed. */
+        CHANGED,
+        /** Not cached. */
+        MISS,
+        /** Not cached anymore, the cache is too small for the working set. */
+        EVICTED
+    }
+
+    private final Cache cache;
+    private final File sizeFile;
+    private final long minSize;
+    private final long maxSize;
+
+    // URLs of responses which have been stored in the cache
+    private final Map<String, Boolean> cachedUrls = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_REMEMBERED_URLS;
+        }
+    });
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param minMB the initial and minimum size of the cache
+     * @param maxMB the maximum size of the cache
+     */
+    public ResponseCache(File directory, int minMB, int maxMB) {
+        this.minSize = minMB * MB;
+        this.maxSize = Math.max(minSize, maxMB * MB);
+        this.sizeFile = new File(directory.getAbsoluteFile().getParentFile(), directory.getName() + ".size");
+        this.cache = new Cache(directory, readSize());
+        LOG.info("Using a response cache of {} MB in {}", cache.maxSize() / MB, directory);
+
+        Metrics.Gauge size = Metrics.gauge("flinkbot_github_cache_bytes", "Size of the response cache.", "type");
+        size.set(() -> {
+            try {
+                return cache.size();
+            } catch (IOException e) {
+                return -1;
+            }
+        }, "used");
+        size.set(cache::maxSize, "max");
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    private long readSize() {
+        if(sizeFile.exists()) {
+            try {
+                long size = Long.parseLong(new String(Files.readAllBytes(sizeFile.toPath()), StandardCharsets.UTF_8).trim());
+                return Math.min(maxSize, Math.max(minSize, size));
+            } catch (IOException | NumberFormatException e) {
+                LOG.warn("Unable to read the cache size from {}", sizeFile, e);
+            }
+        }
+        return minSize;
+    }
+
+    /**
+     * Network interceptor for clients which need the latest data: cached responses are always revalidated.
+     */
+    public Interceptor revalidate() {
+        return chain -> {
+            Response response = chain.proceed(chain.request());
+            if(!"GET".equals(chain.request().method()) || response.header("ETag") == null && response.header("Last-Modified") == null) {
+                return response;
+            }
+            return response.newBuilder().header("Cache-Control", "no-cache").removeHeader("Expires").build();
+        };
+    }
+
+    /**
+     * Application interceptor counting the result of the cacheable requests of a client.
+     */
+    public Interceptor countResults(String client) {
+        return chain -> {
+            Response response = chain.proceed(chain.request());
+            if("GET".equals(chain.request().method())) {
+                RESULTS.inc(client, result(response).name().toLowerCase());
+            }
+            return response;
+        };
+    }
+
+    Result result(Response response) {
+        String url = response.request().url().toString();
+        Result result;
+        if(response.networkResponse() == null) {
+            result = Result.HIT;
+        } else if(response.cacheResponse() != null) {
+            result = response.networkResponse().code() == 304 ? Result.REVALIDATED : Result.CHANGED;
+        } else if(cachedUrls.containsKey(url)) {
+            result = Result.EVICTED;
+            evictions.increment();
+        } else {
+            result = Result.MISS;
+        }
+        if(response.isSuccessful() && (response.header("ETag") != null || response.header("Last-Modified") != null)) {
+            cachedUrls.put(url, Boolean.TRUE);
+        } else {
+            cachedUrls.remove(url);
+        }
+        requests.increment();
+        return result;
+    }
+
+    /**
+     * Decides on the size of the cache after the next start, from the results since the last call: the cache grows
+     * while cached responses get evicted, and shrinks if most of it is unused.
+     */
+    public void adaptSize() {
+        long requestCount = requests.sumThenReset();
+        long evictionCount = evictions.sumThenReset();
+        long used;
+        try {
+            used = cache.size();
+        } catch (IOException e) {
+            LOG.warn("Unable to determine the size of the cache", e);
+            return;
+        }
+        long current = cache.maxSize();
+        long target = current;
+        if(evictionCount > 0 && evictionCount * 100 >= requestCount) {
+            target = Math.min(maxSize, current * 2);
+        } else if(used < current / 4) {
+            target = Math.max(minSize, used * 2);
+        }
+        if(target == readSize()) {
+            return;
+        }
+        LOG.info("{} of {} cached responses were evicted, {} of {} MB used. Using a cache of {} MB after the next start",
+                evictionCount, requestCount, used / MB, current / MB, target / MB);
+        try {
+            Files.write(sizeFile.toPath(), Long.toString(target).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOG.warn("Unable to write the cache size to {}", sizeFile, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Approvals and attention requests folded from the bot commands of a pull request.
+ */
+public class ReviewState {
+    // aspect -> "@login" of the approvers
+    private Map<String, Set<String>> approvals = new HashMap<>();
+    // "@login" of the users whose attention is required
+    private Set<String> attention = new HashSet<>();
+
+    public Map<String, Set<String>> getApprovals() {
+        return approvals;
+    }
+
+    public void setApprovals(Map<String, Set<String>> approvals) {
+        this.approvals = approvals;
+    }
+
+    public Set<String> getAttention() {
+        return attention;
+    }
+
+    public void setAttention(Set<String> attention) {
+        this.attention = attention;
+    }
+
+    /**
+     * Adds the user with the given login to the approvers of the aspect.
+     */
+    public void approve(String aspect, String login) {
+        approvals.computeIfAbsent(aspect, a -> new HashSet<>()).add("@" + login);
+    }
+
+    /**
+     * Removes the user with the given login from the approvers of the aspect.
+     */
+    public void disapprove(String aspect, String login) {
+        // an aspect which has been disapproved is known, even without approvers
+        approvals.computeIfAbsent(aspect, a -> new HashSet<>()).remove("@" + login);
+    }
+
+    public ReviewState copy() {
+        ReviewState copy = new ReviewState();
+        for(Map.Entry<String, Set<String>> approval: approvals.entrySet()) {
+            copy.approvals.put(approval.getKey(), new HashSet<>(approval.getValue()));
+        }
+        copy.attention.addAll(attention);
+        return copy;
+    }
+}
@@ -0,0 +1,86 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes tasks concurrently, but strictly in submission order for tasks with the same key.
+ *
+ * Every key is mapped to one of a fixed number of single threaded lanes. Tasks for different pull requests can
+ * run in parallel, while all tasks for the same pull request are processed one after another. With
+ * {@link ThreadMode#VIRTUAL}, idle lanes give up their thread, so that there can be a lane for (almost) every PR.
+ */
+public class StripedExecutor {
+    private static Logger LOG = LoggerFactory.getLogger(StripedExecutor.class);
+
+    private final ThreadPoolExecutor[] lanes;
+
+    public StripedExecutor(String name, int numLanes) {
+        this(name, numLanes, ThreadMode.PLATFORM);
+    }
+
+    public StripedExecutor(String name, int numLanes, ThreadMode threadMode) {
+        if(numLanes < 1) {
+            throw new IllegalArgumentException("At least one lane is required");
+        }
+        lanes = new ThreadPoolExecutor[numLanes];
+        for(int i = 0; i < numLanes; i++) {
+            final String threadName = name + " " + i;
+            if(threadMode == ThreadMode.VIRTUAL) {
+                lanes[i] = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                        r -> threadMode.newThread(threadName, r));
+                lanes[i].allowCoreThreadTimeOut(true);
+            } else {
+                lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                        r -> threadMode.newThread(threadName, r));
+            }
+        }
+    }
+
+    public void execute(int key, Runnable task) {
+        lanes[Math.floorMod(key, lanes.length)].execute(() -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                LOG.warn("Error while executing task for key {}", key, t);
+            }
+        });
+    }
+
+    /**
+     * Like {@link #execute(int, Runnable)}, for callers which wait for the result of the task.
+     */
+    public <T> Future<T> submit(int key, Callable<T> task) {
+        return lanes[Math.floorMod(key, lanes.length)].submit(task);
+    }
+
+    /**
+     * Number of tasks waiting in all lanes.
+     */
+    public int getQueueSize() {
+        int size = 0;
+        for(ThreadPoolExecutor lane: lanes) {
+            size += lane.getQueue().size();
+        }
+        return size;
+    }
+
+    /**
+     * Stops accepting new tasks and waits for the submitted ones to finish.
+     */
+    public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        for(ThreadPoolExecutor lane: lanes) {
+            lane.shutdown();
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for(ThreadPoolExecutor lane: lanes) {
+            lane.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+}
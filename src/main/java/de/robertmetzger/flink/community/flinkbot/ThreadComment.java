@@ -0,0 +1,42 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.Date;
+
+/**
+ * Minimal view of an issue comment or review, as returned by the incremental comment queries in {@link Github}.
+ */
+public class ThreadComment {
+    private final long id;
+    private final String author;
+    private final String body;
+    private final Date createdAt;
+    private final Date updatedAt;
+
+    public ThreadComment(long id, String author, String body, Date createdAt, Date updatedAt) {
+        this.id = id;
+        this.author = author;
+        this.body = body == null ? "" : body;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public Date getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,96 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+
+/**
+ * The threads which process mentions and run the checks.
+ *
+ * The work of the bot is blocking I/O (GitHub, Jira), so with {@link #VIRTUAL} threads every PR gets its own lane
+ * and every check its own thread, without sizing thread pools to the load. The requests to GitHub are then only
+ * limited by the {@link RateLimitScheduler}. Virtual threads require Java 21 or newer; the bot is built for Java 8,
+ * so they are created reflectively.
+ *
+ * A virtual thread which blocks while holding a monitor (synchronized) pins its carrier thread until Java 24. Code
+ * which may block on I/O while holding a lock therefore uses {@link java.util.concurrent.locks.ReentrantLock}.
+ */
+public enum ThreadMode {
+    /** A fixed number of (daemon) threads, see main.pullRequestThreads and main.checkThreads. */
+    PLATFORM,
+    /** A virtual thread per lane and check. */
+    VIRTUAL;
+
+    private static Logger LOG = LoggerFactory.getLogger(ThreadMode.class);
+
+    /**
+     * @param value "platform" or "virtual", null for the default
+     * @return the mode, {@link #PLATFORM} if virtual threads are not supported by the JVM
+     */
+    public static ThreadMode fromConfig(String value) {
+        if(value == null || value.trim().isEmpty() || value.trim().equalsIgnoreCase("platform")) {
+            return PLATFORM;
+        }
+        if(!value.trim().equalsIgnoreCase("virtual")) {
+            throw new IllegalArgumentException("Unknown thread mode: " + value);
+        }
+        if(!VirtualThreads.isAvailable()) {
+            LOG.warn("Virtual threads are not supported on Java {}, using platform threads", System.getProperty("java.version"));
+            return PLATFORM;
+        }
+        return VIRTUAL;
+    }
+
+    /**
+     * Creates a daemon thread, which is not started yet.
+     */
+    public Thread newThread(String name, Runnable task) {
+        if(this == VIRTUAL) {
+            return VirtualThreads.newThread(name, task);
+        }
+        Thread t = new Thread(task, name);
+        t.setDaemon(true);
+        return t;
+    }
+
+    /**
+     * Thread.ofVirtual().name(name).unstarted(task), if available.
+     */
+    private static class VirtualThreads {
+        private static final Method OF_VIRTUAL;
+        private static final Method NAME;
+        private static final Method UNSTARTED;
+
+        static {
+            Method ofVirtual = null;
+            Method name = null;
+            Method unstarted = null;
+            try {
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                ofVirtual = Thread.class.getMethod("ofVirtual");
+                name = builder.getMethod("name", String.class);
+                unstarted = builder.getMethod("unstarted", Runnable.class);
+                // fails on Java 19 and 20 without --enable-preview
+                unstarted.invoke(name.invoke(ofVirtual.invoke(null), "probe"), (Runnable) () -> { });
+            } catch (Throwable t) {
+                ofVirtual = null;
+            }
+            OF_VIRTUAL = ofVirtual;
+            NAME = name;
+            UNSTARTED = unstarted;
+        }
+
+        static boolean isAvailable() {
+            return OF_VIRTUAL != null;
+        }
+
+        static Thread newThread(String name, Runnable task) {
+            try {
+                return (Thread) UNSTARTED.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), name), task);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create virtual thread " + name, e);
+            }
+        }
+    }
+}
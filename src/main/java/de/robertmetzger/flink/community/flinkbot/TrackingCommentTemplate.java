@@ -0,0 +1,175 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The tracking comment, compiled once into segments which are filled with the review state and the section of the
+ * automated checks.
+ *
+ * A template line mentioning an aspect (like "[description]") or "[attention]" is ticked (❓ becomes ✅ or ❗) and
+ * followed by a line listing the approvers or users, once there are any. The line "##CHECKS PLACEHOLDER##" is replaced
+ * by the checks section, and the lines after it are dropped up to the line "## Review Progress".
+ *
+ * Instances are immutable and can be shared between threads.
+ */
+public class TrackingCommentTemplate {
+    static final String CHECKS_PLACEHOLDER = "##CHECKS PLACEHOLDER##";
+    private static final String REVIEW_PROGRESS = "## Review Progress";
+    private static final String APPROVED_BY = "    - Approved by ";
+    private static final String ATTENTION_BY = "    - Needs attention by ";
+    // per listed user, including the community status
+    private static final int USER_LENGTH = 32;
+
+    private enum Kind {
+        TEXT,
+        ASPECT,
+        ATTENTION,
+        CHECKS
+    }
+
+    private static class Segment {
+        final Kind kind;
+        // the static text, or the line of a slot without a tick
+        final String text;
+        final String tickedText;
+        final String aspect;
+        // whether the line of the slot is shown without a tick
+        final boolean showUnticked;
+
+        Segment(Kind kind, String text, String tickedText, String aspect, boolean showUnticked) {
+            this.kind = kind;
+            this.text = text;
+            this.tickedText = tickedText;
+            this.aspect = aspect;
+            this.showUnticked = showUnticked;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final Function<String, String> communityStatus;
+    private final int length;
+
+    /**
+     * @param aspects the aspects which can be approved
+     * @param communityStatus decorates a "@login" with the community status of the user
+     */
+    public TrackingCommentTemplate(String template, String[] aspects, Function<String, String> communityStatus) {
+        this.communityStatus = communityStatus;
+        StringBuilder text = new StringBuilder();
+        boolean dropLines = false;
+        for(String line: template.split("\n")) {
+            if(line.contains(CHECKS_PLACEHOLDER)) {
+                addText(text);
+                segments.add(new Segment(Kind.CHECKS, null, null, null, false));
+                // the line itself, and the lines of a previous checks section are replaced
+                dropLines = true;
+            }
+            if(line.contains(REVIEW_PROGRESS)) {
+                dropLines = false;
+            }
+
+            Segment slot = null;
+            if(line.contains("[attention]")) {
+                slot = new Segment(Kind.ATTENTION, line, line.replace("❓", "❗"), null, !dropLines);
+            } else {
+                String aspect = Arrays.stream(aspects).filter(a -> line.contains("[" + a + "]")).reduce((a, b) -> b).orElse(null);
+                if(aspect != null) {
+                    slot = new Segment(Kind.ASPECT, line, line.replace("❓", "✅"), aspect, !dropLines);
+                }
+            }
+
+            if(slot != null) {
+                addText(text);
+                segments.add(slot);
+            } else {
+                if(!dropLines) {
+                    text.append(line);
+                }
+                text.append('\n');
+            }
+        }
+        addText(text);
+        this.length = segments.stream().mapToInt(s -> s.text == null ? 0 : s.text.length() + 1).sum();
+    }
+
+    private void addText(StringBuilder text) {
+        if(text.length() > 0) {
+            segments.add(new Segment(Kind.TEXT, text.toString(), null, null, true));
+            text.setLength(0);
+        }
+    }
+
+    /**
+     * Renders the comment for the review state.
+     *
+     * @param checksSection replaces the checks placeholder
+     */
+    public String render(ReviewState reviewState, String checksSection) {
+        int users = reviewState.getAttention().size();
+        for(Set<String> approvers: reviewState.getApprovals().values()) {
+            users += approvers.size();
+        }
+        StringBuilder comment = new StringBuilder(length + checksSection.length() + users * USER_LENGTH);
+        for(Segment segment: segments) {
+            switch (segment.kind) {
+                case TEXT:
+                    comment.append(segment.text);
+                    break;
+                case CHECKS:
+                    comment.append(checksSection);
+                    break;
+                case ASPECT:
+                    appendSlot(comment, segment, reviewState.getApprovals().get(segment.aspect), APPROVED_BY);
+                    break;
+                case ATTENTION:
+                    appendSlot(comment, segment, reviewState.getAttention(), ATTENTION_BY);
+                    break;
+            }
+        }
+        comment.setLength(Math.max(0, comment.length() - 1)); // remove trailing newline
+        return comment.toString();
+    }
+
+    private void appendSlot(StringBuilder comment, Segment slot, Set<String> users, String prefix) {
+        if(users == null || users.isEmpty()) {
+            if(slot.showUnticked) {
+                comment.append(slot.text);
+            }
+            comment.append('\n');
+            return;
+        }
+        List<String> sorted = new ArrayList<>(users);
+        Collections.sort(sorted);
+        comment.append(slot.tickedText).append('\n').append(prefix);
+        for(int i = 0; i < sorted.size(); i++) {
+            if(i > 0) {
+                comment.append(", ");
+            }
+            comment.append(communityStatus.apply(sorted.get(i)));
+        }
+        comment.append('\n');
+    }
+
+    /**
+     * A hash of everything the rendered comment depends on, except the time of the checks. Rendering can be skipped
+     * if it did not change.
+     */
+    public int fingerprint(ReviewState reviewState, String headSha, List<String> warnings) {
+        int hash = Objects.hash(headSha, warnings);
+        for(Segment segment: segments) {
+            if(segment.kind == Kind.ASPECT) {
+                // no approvers and an empty set render the same (and have the same hash)
+                hash = 31 * hash + Objects.hashCode(reviewState.getApprovals().get(segment.aspect));
+            } else if(segment.kind == Kind.ATTENTION) {
+                hash = 31 * hash + reviewState.getAttention().hashCode();
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,96 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Records the exchanges with the GitHub API into a fixture file, for replaying them with the ReplayServer of the benchmarks.
+ *
+ * Every exchange is a line of JSON with the request (method, path relative to the API url, body) and the response
+ * (status, relevant headers, body, duration). Credentials are not recorded, but the response bodies are stored as
+ * they are.
+ */
+public class TrafficRecorder implements Interceptor {
+    private static Logger LOG = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** The response headers the bot (or the GitHub library) looks at. */
+    static final String[] HEADERS = {"Content-Type", "ETag", "Last-Modified", "Link", "Location", "X-Poll-Interval",
+            "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset"};
+
+    private final String apiUrl;
+    // guarded by this
+    private final Writer out;
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * @param file the fixtures are appended to this file
+     * @param apiUrl only the exchanges with this API are recorded
+     */
+    public TrafficRecorder(File file, String apiUrl) throws IOException {
+        this.apiUrl = apiUrl;
+        this.out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        LOG.info("Recording the GitHub traffic to {}", file);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        long start = System.nanoTime();
+        Response response = chain.proceed(request);
+        String url = request.url().toString();
+        if(!url.startsWith(apiUrl)) {
+            return response;
+        }
+        ObjectNode exchange = MAPPER.createObjectNode();
+        exchange.put("method", request.method());
+        exchange.put("path", url.substring(apiUrl.length()));
+        if(request.body() != null) {
+            Buffer body = new Buffer();
+            request.body().writeTo(body);
+            exchange.put("requestBody", body.readUtf8());
+        }
+        exchange.put("status", response.code());
+        ObjectNode headers = exchange.putObject("headers");
+        for(String header: HEADERS) {
+            String value = response.header(header);
+            if(value != null) {
+                headers.put(header, value);
+            }
+        }
+        exchange.put("body", response.peekBody(Long.MAX_VALUE).string());
+        exchange.put("millis", (System.nanoTime() - start) / 1_000_000);
+        exchange.put("apiUrl", apiUrl);
+        write(MAPPER.writeValueAsString(exchange));
+        return response;
+    }
+
+    private void write(String line) {
+        writeLock.lock();
+        try {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            LOG.warn("Unable to record exchange", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives GitHub webhook deliveries and hands mentions of the bot directly to {@link Flinkbot}, as an alternative
+ * to polling the notifications API.
+ *
+ * Supported events: issue_comment, pull_request_review and pull_request (opened / reopened).
+ * Every delivery needs to be signed with the configured secret.
+ */
+public class WebhookServer {
+    private static Logger LOG = LoggerFactory.getLogger(WebhookServer.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    public static final String PATH = "/github-webhook";
+
+    private final String secret;
+    private final String botName;
+    // the bot of each served repository, by the case insensitive repository name
+    private final Map<String, Flinkbot> bots;
+    private final HttpServer server;
+    // deliveries are acknowledged immediately and processed in the background, in the order they arrived.
+    // Updates of PRs are handed over to the pull request executor of the bot.
+    private final ThreadPoolExecutor processor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+        Thread t = new Thread(r, "Webhook processor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public WebhookServer(int port, String secret, String repository, String botName, Flinkbot bot) throws IOException {
+        this(port, secret, botName, Collections.singletonMap(repository, bot));
+    }
+
+    /**
+     * @param bots the bots of the served repositories, by repository name ("owner/name")
+     */
+    public WebhookServer(int port, String secret, String botName, Map<String, Flinkbot> bots) throws IOException {
+        if(secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A webhook secret is required");
+        }
+        this.secret = secret;
+        this.botName = "@" + botName;
+        this.bots = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        this.bots.putAll(bots);
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PATH, this::handle);
+    }
+
+    public void start() {
+        server.start();
+        LOG.info("Listening for GitHub webhooks on port {}{}", getPort(), PATH);
+    }
+
+    public void stop() {
+        server.stop(0);
+        processor.shutdown();
+        try {
+            processor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Number of deliveries which have been accepted, but not processed yet.
+     */
+    public int getBacklog() {
+        return processor.getQueue().size();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if(!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Only POST is supported");
+                return;
+            }
+            byte[] payload = readFully(exchange.getRequestBody());
+            if(!isValidSignature(secret, payload,
+                    exchange.getRequestHeaders().getFirst("X-Hub-Signature-256"),
+                    exchange.getRequestHeaders().getFirst("X-Hub-Signature"))) {
+                LOG.warn("Rejecting webhook delivery {} with invalid signature", exchange.getRequestHeaders().getFirst("X-GitHub-Delivery"));
+                respond(exchange, 401, "Invalid signature");
+                return;
+            }
+            String event = exchange.getRequestHeaders().getFirst("X-GitHub-Event");
+            JsonNode json = MAPPER.readTree(payload);
+            Runnable action = toAction(event, json);
+            if(action != null) {
+                processor.submit(() -> {
+                    try {
+                        action.run();
+                    } catch (Throwable t) {
+                        LOG.warn("Error while processing '{}' webhook", event, t);
+                    }
+                });
+            }
+            respond(exchange, 202, "Accepted");
+        } catch (Throwable t) {
+            LOG.warn("Error while handling webhook delivery", t);
+            respond(exchange, 500, "Error");
+        }
+    }
+
+    /**
+     * Translates a webhook delivery into an action of the bot. Returns null if the delivery is not relevant.
+     */
+    private Runnable toAction(String event, JsonNode json) {
+        if(event == null) {
+            return null;
+        }
+        String repo = json.path("repository").path("full_name").asText();
+        Flinkbot bot = bots.get(repo);
+        if(bot == null) {
+            LOG.debug("Ignoring '{}' webhook for repository '{}'", event, repo);
+            return null;
+        }
+        String action = json.path("action").asText();
+        switch (event) {
+            case "issue_comment":
+                // issue comments are also delivered for plain issues
+                if(json.path("issue").path("pull_request").isMissingNode()) {
+                    return null;
+                }
+                JsonNode comment = json.path("comment");
+                int commentPR = json.path("issue").path("number").asInt();
+                long commentId = comment.path("id").asLong();
+                if("deleted".equals(action)) {
+                    // the incremental update can not see deleted comments. Only comments with commands, and the
+                    // tracking comment, matter for the review state
+                    if(!mentionsBot(comment) && !bot.isTrackingComment(commentPR, commentId)) {
+                        return null;
+                    }
+                    LOG.info("Received '{}' comment webhook for PR #{}", action, commentPR);
+                    return () -> bot.schedulePullRequestUpdate(commentPR, 0, true);
+                }
+                // an edit might also have removed the commands. The update notices the edit and rebuilds
+                if("edited".equals(action) ? isOwnComment(comment) : !mentionsBot(comment)) {
+                    return null;
+                }
+                LOG.info("Received '{}' comment webhook for PR #{}", action, commentPR);
+                return () -> bot.schedulePullRequestUpdate(commentPR, commentId, false);
+            case "pull_request_review":
+                if(!mentionsBot(json.path("review"))) {
+                    return null;
+                }
+                int reviewPR = json.path("pull_request").path("number").asInt();
+                LOG.info("Received '{}' review webhook for PR #{}", action, reviewPR);
+                return () -> bot.schedulePullRequestUpdate(reviewPR, 0, false);
+            case "pull_request":
+                if(!"opened".equals(action) && !"reopened".equals(action)) {
+                    return null;
+                }
+                int newPR = json.path("number").asInt();
+                LOG.info("Received '{}' pull request webhook for PR #{}", action, newPR);
+                // a scan for new PRs might be running, which should not hold up the following deliveries
+                return () -> bot.scheduleNewPRCheck(newPR);
+            default:
+                LOG.debug("Ignoring '{}' webhook", event);
+                return null;
+        }
+    }
+
+    private boolean mentionsBot(JsonNode comment) {
+        // ignore the bot's own comments, in particular updates of the tracking message
+        if(isOwnComment(comment)) {
+            return false;
+        }
+        return comment.path("body").asText().contains(botName);
+    }
+
+    private boolean isOwnComment(JsonNode comment) {
+        return botName.equals("@" + comment.path("user").path("login").asText());
+    }
+
+    /**
+     * Validates the HMAC signature GitHub computed over the payload. The SHA-256 signature is preferred, the SHA-1
+     * signature is only used if GitHub did not send a SHA-256 signature.
+     */
+    static boolean isValidSignature(String secret, byte[] payload, String sha256Signature, String sha1Signature) {
+        try {
+            if(sha256Signature != null) {
+                return signatureMatches("HmacSHA256", "sha256=", secret, payload, sha256Signature);
+            }
+            if(sha1Signature != null) {
+                return signatureMatches("HmacSHA1", "sha1=", secret, payload, sha1Signature);
+            }
+            return false;
+        } catch (GeneralSecurityException e) {
+            LOG.warn("Unable to compute webhook signature", e);
+            return false;
+        }
+    }
+
+    private static boolean signatureMatches(String algorithm, String prefix, String secret, byte[] payload, String signature) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), algorithm));
+        String expected = prefix + toHex(mac.doFinal(payload));
+        // constant time comparison
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), signature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(byte b: bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
@@ -0,0 +1,369 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the accepted pull request updates, so that updates which have been acknowledged to GitHub
+ * (notification marked as read) but not finished are replayed after a crash.
+ *
+ * The journal consists of memory-mapped segment files of fixed size records. An update is written as an "accepted"
+ * record before it is acknowledged, and as a "done" record once it is finished. Accepted records are forced to disk
+ * before {@link #accept(int, long, boolean)} returns, concurrent callers share a single force. Done records are not
+ * forced: losing one only means that the update is processed again. Segments which contain no unfinished update
+ * anymore are deleted.
+ *
+ * Every replay of an update after a restart is recorded as well (not forced), so that an update which keeps failing
+ * can be given up after a few replays, instead of keeping its segment forever.
+ */
+public class WorkJournal {
+    private static Logger LOG = LoggerFactory.getLogger(WorkJournal.class);
+
+    static final int RECORD_SIZE = 32;
+    private static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+    private static final byte ACCEPTED = 1;
+    private static final byte DONE = 2;
+    private static final byte REPLAYED = 3;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * A pull request update which has been accepted, but is not done yet.
+     */
+    public static class Item {
+        private final long id;
+        private final int prID;
+        private final long triggeringCommentId;
+        private final boolean rebuild;
+        private final long segment;
+        private final int replays;
+
+        Item(long id, int prID, long triggeringCommentId, boolean rebuild, long segment, int replays) {
+            this.id = id;
+            this.prID = prID;
+            this.triggeringCommentId = triggeringCommentId;
+            this.rebuild = rebuild;
+            this.segment = segment;
+            this.replays = replays;
+        }
+
+        private Item replayed() {
+            return new Item(id, prID, triggeringCommentId, rebuild, segment, replays + 1);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public int getPrID() {
+            return prID;
+        }
+
+        public long getTriggeringCommentId() {
+            return triggeringCommentId;
+        }
+
+        public boolean isRebuild() {
+            return rebuild;
+        }
+
+        /**
+         * How often the update has been replayed after a restart, see {@link #replayed(long)}.
+         */
+        public int getReplays() {
+            return replays;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + prID + " (id=" + id + ", comment=" + triggeringCommentId + ", rebuild=" + rebuild + ", replays=" + replays + ")";
+        }
+    }
+
+    /**
+     * Directory of the segments. null for a disabled journal.
+     */
+    private final File dir;
+    private final int segmentSize;
+    // mapping, forcing and deleting segments happens under these locks, see ThreadMode
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    // guarded by lock
+    private final TreeMap<Long, Item> open = new TreeMap<>();
+    private long nextId = 1;
+    private long segmentIndex;
+    private MappedByteBuffer segment;
+    // guarded by forceLock: position (over all segments) up to which the records are on disk
+    private long forced;
+
+    public static WorkJournal disabled() {
+        return new WorkJournal(null, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the journal in the given directory, restoring the unfinished updates.
+     */
+    public static WorkJournal open(File dir) throws IOException {
+        return open(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    WorkJournal(File dir, int segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+    }
+
+    static WorkJournal open(File dir, int segmentSize) throws IOException {
+        WorkJournal journal = new WorkJournal(dir, segmentSize);
+        journal.recover();
+        return journal;
+    }
+
+    private void recover() throws IOException {
+        if(!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+        lock.lock();
+        try {
+            List<Long> segments = listSegments();
+            boolean torn = false;
+            for(long index: segments) {
+                segmentIndex = index;
+                segment = map(index);
+                torn = !readSegment(index);
+            }
+            if(segment == null || torn) {
+                // continue with a fresh segment after a torn record
+                roll();
+            }
+            forced = position();
+            deleteFinishedSegments();
+            if(!open.isEmpty()) {
+                LOG.info("Restored {} unfinished pull request updates from {}", open.size(), dir);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads the records of a segment, leaving the buffer positioned after the last record.
+     *
+     * @return false if the segment ends with a torn or corrupted record.
+     */
+    private boolean readSegment(long index) {
+        byte[] bytes = new byte[RECORD_SIZE];
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        while (segment.remaining() >= RECORD_SIZE) {
+            int start = segment.position();
+            segment.get(bytes);
+            byte type = record.get(0);
+            if(type == 0) {
+                segment.position(start);
+                return true;
+            }
+            if(record.getInt(24) != checksum(bytes)) {
+                LOG.warn("Ignoring corrupted record at position {} of journal segment {}", start, index);
+                segment.position(start);
+                return false;
+            }
+            long id = record.getLong(8);
+            nextId = Math.max(nextId, id + 1);
+            if(type == ACCEPTED) {
+                open.put(id, new Item(id, record.getInt(4), record.getLong(16), record.get(1) != 0, index, 0));
+            } else if(type == DONE) {
+                open.remove(id);
+            } else if(type == REPLAYED) {
+                open.computeIfPresent(id, (key, item) -> item.replayed());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records an accepted update and forces it to disk.
+     *
+     * @return the id of the update, for {@link #done(long)}
+     */
+    public long accept(int prID, long triggeringCommentId, boolean rebuild) throws IOException {
+        if(dir == null) {
+            return 0;
+        }
+        long id;
+        long position;
+        lock.lock();
+        try {
+            id = nextId++;
+            append(ACCEPTED, id, prID, triggeringCommentId, rebuild);
+            open.put(id, new Item(id, prID, triggeringCommentId, rebuild, segmentIndex, 0));
+            position = position();
+        } finally {
+            lock.unlock();
+        }
+        force(position);
+        return id;
+    }
+
+    /**
+     * Records that an update is finished. It will not be replayed after a restart.
+     */
+    public void done(long id) {
+        lock.lock();
+        try {
+            Item item = open.remove(id);
+            if(item == null) {
+                return;
+            }
+            try {
+                append(DONE, id, item.prID, 0, false);
+            } catch (IOException e) {
+                // the update is replayed after a restart, which is harmless
+                LOG.warn("Unable to record finished update {} of PR #{}", id, item.prID, e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records that an unfinished update is replayed.
+     */
+    public void replayed(long id) {
+        lock.lock();
+        try {
+            Item item = open.computeIfPresent(id, (key, open) -> open.replayed());
+            if(item == null) {
+                return;
+            }
+            try {
+                append(REPLAYED, id, item.prID, 0, false);
+            } catch (IOException e) {
+                // the replay is not counted after a restart
+                LOG.warn("Unable to record replayed update {} of PR #{}", id, item.prID, e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The accepted updates which are not done yet, in the order they have been accepted.
+     */
+    public List<Item> getOpenItems() {
+        lock.lock();
+        try {
+            return new ArrayList<>(open.values());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(byte type, long id, int prID, long triggeringCommentId, boolean rebuild) throws IOException {
+        if(segment.remaining() < RECORD_SIZE) {
+            roll();
+        }
+        // type, rebuild flag, 2 unused bytes, PR, id, triggering comment, checksum, 4 unused bytes
+        byte[] bytes = new byte[RECORD_SIZE];
+        ByteBuffer record = ByteBuffer.wrap(bytes);
+        record.put(0, type);
+        record.put(1, (byte) (rebuild ? 1 : 0));
+        record.putInt(4, prID);
+        record.putLong(8, id);
+        record.putLong(16, triggeringCommentId);
+        record.putInt(24, checksum(bytes));
+        segment.put(bytes);
+    }
+
+    /**
+     * Forces the records up to the given position to disk. Records appended while waiting are forced as well.
+     */
+    private void force(long position) {
+        forceLock.lock();
+        try {
+            if(forced >= position) {
+                return;
+            }
+            MappedByteBuffer current;
+            long upTo;
+            lock.lock();
+            try {
+                current = segment;
+                upTo = position();
+            } finally {
+                lock.unlock();
+            }
+            current.force();
+            forced = upTo;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Continues with a new segment. Segments are only written once, the previous one is forced before.
+     */
+    private void roll() throws IOException {
+        if(segment != null) {
+            segment.force();
+            segmentIndex++;
+        }
+        segment = map(segmentIndex);
+        deleteFinishedSegments();
+    }
+
+    private long position() {
+        return segmentIndex * segmentSize + segment.position();
+    }
+
+    private void deleteFinishedSegments() {
+        long oldestNeeded = open.isEmpty() ? segmentIndex : Math.min(segmentIndex, open.firstEntry().getValue().segment);
+        for(long index: listSegments()) {
+            if(index < oldestNeeded && !segmentFile(index).delete()) {
+                LOG.warn("Unable to delete journal segment {}", segmentFile(index));
+            }
+        }
+    }
+
+    private MappedByteBuffer map(long index) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile(index), "rw")) {
+            // the mapping stays valid after closing the file
+            return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private File segmentFile(long index) {
+        return new File(dir, SEGMENT_PREFIX + String.format("%020d", index) + SEGMENT_SUFFIX);
+    }
+
+    private List<Long> listSegments() {
+        List<Long> segments = new ArrayList<>();
+        String[] names = dir.list();
+        if(names != null) {
+            for(String name: names) {
+                if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                }
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32 crc = new CRC32();
+        crc.update(record, 0, 24);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,167 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Delays the writes to a pull request (tracking comment and labels) for a short window, so that a burst of
+ * mentions leads to a single write of the final state.
+ *
+ * A write replaces the pending write of the same pull request and restarts its window, but a write is never delayed
+ * by more than four windows. Due writes are handed to the given executor, usually the lane of the pull request.
+ */
+public class WriteBehind {
+    private static Logger LOG = LoggerFactory.getLogger(WriteBehind.class);
+
+    private static final Metrics.Counter COALESCED = Metrics.counter("flinkbot_writes_coalesced_total",
+            "Writes to a pull request which have been replaced by a later write within the write delay.");
+
+    private final long delayMillis;
+    private final BiConsumer<Integer, Runnable> executor;
+    private final ScheduledExecutorService timer;
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private final Map<Integer, Pending> pending = new HashMap<>();
+
+    private static class Pending {
+        final long firstSubmitted;
+        Runnable write;
+        ScheduledFuture<?> future;
+        // run once the write succeeded
+        final List<Runnable> afterWrite = new ArrayList<>();
+
+        Pending(long firstSubmitted) {
+            this.firstSubmitted = firstSubmitted;
+        }
+
+        Runnable run() {
+            return () -> {
+                write.run();
+                afterWrite.forEach(Runnable::run);
+            };
+        }
+    }
+
+    /**
+     * @param delayMillis the window in which writes are coalesced. With 0, writes are executed immediately by
+     *                    the calling thread.
+     * @param executor executes the due write of a pull request
+     */
+    public WriteBehind(long delayMillis, BiConsumer<Integer, Runnable> executor) {
+        this.delayMillis = delayMillis;
+        this.executor = executor;
+        if(delayMillis > 0) {
+            ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "Write behind timer");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            this.timer = timer;
+        } else {
+            this.timer = null;
+        }
+    }
+
+    public void submit(int prID, Runnable write) {
+        if(timer == null) {
+            write.run();
+            return;
+        }
+        lock.lock();
+        try {
+            long now = System.currentTimeMillis();
+            Pending p = pending.get(prID);
+            if(p == null) {
+                p = new Pending(now);
+                pending.put(prID, p);
+            } else {
+                p.future.cancel(false);
+                COALESCED.inc();
+                LOG.debug("Coalescing writes to PR #{}", prID);
+            }
+            p.write = write;
+            long delay = Math.max(0, Math.min(delayMillis, p.firstSubmitted + 4 * delayMillis - now));
+            final Pending due = p;
+            p.future = timer.schedule(() -> fire(prID, due), delay, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fire(int prID, Pending due) {
+        lock.lock();
+        try {
+            if(pending.get(prID) != due) {
+                // already written
+                return;
+            }
+            pending.remove(prID);
+        } finally {
+            lock.unlock();
+        }
+        executor.accept(prID, due.run());
+    }
+
+    /**
+     * Runs the callback after the pending write of the pull request succeeded, or immediately if there is no pending
+     * write. The callback is not run if the write fails.
+     */
+    public void afterWrite(int prID, Runnable callback) {
+        lock.lock();
+        try {
+            Pending p = pending.get(prID);
+            if(p != null) {
+                p.afterWrite.add(callback);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        callback.run();
+    }
+
+    /**
+     * Hands all pending writes to the executor, without waiting for their window to end.
+     */
+    public void flush() {
+        Map<Integer, Pending> due;
+        lock.lock();
+        try {
+            due = new HashMap<>(pending);
+            pending.clear();
+        } finally {
+            lock.unlock();
+        }
+        if(!due.isEmpty()) {
+            LOG.info("Flushing {} pending writes", due.size());
+        }
+        for(Map.Entry<Integer, Pending> write: due.entrySet()) {
+            write.getValue().future.cancel(false);
+            executor.accept(write.getKey(), write.getValue().run());
+        }
+    }
+
+    /**
+     * Pull requests with a pending write.
+     */
+    public List<Integer> getPending() {
+        lock.lock();
+        try {
+            return new ArrayList<>(pending.keySet());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
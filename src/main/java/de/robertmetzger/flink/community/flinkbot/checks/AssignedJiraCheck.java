@@ -1,76 +1,123 @@
 package de.robertmetzger.flink.community.flinkbot.checks;
 
 
-import com.atlassian.jira.rest.client.api.IssueRestClient;
 import com.atlassian.jira.rest.client.api.JiraRestClient;
 import com.atlassian.jira.rest.client.api.domain.Issue;
 import com.atlassian.jira.rest.client.auth.AnonymousAuthenticationHandler;
 import com.atlassian.jira.rest.client.internal.async.AsynchronousJiraRestClientFactory;
-import com.atlassian.util.concurrent.Promise;
-import de.robertmetzger.flink.community.flinkbot.Flinkbot;
 import de.robertmetzger.flink.community.flinkbot.PullRequestCheck;
-import org.kohsuke.github.GHObject;
+import de.robertmetzger.flink.community.flinkbot.PullRequestContext;
 import org.kohsuke.github.GHPullRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class AssignedJiraCheck implements PullRequestCheck {
-    private static Logger LOG = LoggerFactory.getLogger(Flinkbot.class);
+    private static Logger LOG = LoggerFactory.getLogger(AssignedJiraCheck.class);
 
     private static Pattern pattern = Pattern.compile("(?i).*(FLINK-[0-9]+).*");
-    private IssueRestClient issueClient;
 
-    public AssignedJiraCheck() {
+    // the parser of the Jira client requires these fields
+    private static final Set<String> SEARCH_FIELDS = new HashSet<>(Arrays.asList(
+            "summary", "issuetype", "created", "updated", "project", "status", "assignee"));
+
+    // bulk lookups run outside of the deadline of the check
+    private static final long REQUEST_TIMEOUT_SECONDS = 30;
 
+    private final JiraIssueCache issueCache;
+    private final ReentrantLock restClientLock = new ReentrantLock();
+    private volatile JiraRestClient restClient;
+
+    public AssignedJiraCheck() {
+        this.issueCache = new JiraIssueCache(this::resolveAssigned,
+                TimeUnit.HOURS.toMillis(1),
+                // unassigned tickets are expected to get assigned soon
+                TimeUnit.MINUTES.toMillis(1),
+                10_000);
     }
 
-    private IssueRestClient getIssueClient() {
-        if(issueClient != null) {
-            return this.issueClient;
+    private JiraRestClient getRestClient() {
+        JiraRestClient client = restClient;
+        if(client != null) {
+            return client;
         }
-        LOG.info("Creating new JIRA REST client");
-        AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
-        JiraRestClient restClient = null;
+        restClientLock.lock();
         try {
-            restClient = factory.create(new URI("https://issues.apache.org/jira"), new AnonymousAuthenticationHandler());
-        } catch (URISyntaxException e) {
-            throw new RuntimeException("URI wrong", e);
+            if(restClient == null) {
+                LOG.info("Creating new JIRA REST client");
+                AsynchronousJiraRestClientFactory factory = new AsynchronousJiraRestClientFactory();
+                try {
+                    restClient = factory.create(new URI("https://issues.apache.org/jira"), new AnonymousAuthenticationHandler());
+                } catch (URISyntaxException e) {
+                    throw new RuntimeException("URI wrong", e);
+                }
+            }
+            return restClient;
+        } finally {
+            restClientLock.unlock();
+        }
+    }
+
+    /**
+     * Looks up all given issues with a single JQL search.
+     */
+    private Map<String, Boolean> resolveAssigned(Collection<String> keys) throws Exception {
+        String jql = "key in (" + String.join(",", keys) + ")";
+        Map<String, Boolean> result = new HashMap<>();
+        for(Issue issue: getRestClient().getSearchClient().searchJql(jql, keys.size(), 0, SEARCH_FIELDS)
+                .get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS).getIssues()) {
+            result.put(issue.getKey(), issue.getAssignee() != null);
         }
-        this.issueClient = restClient.getIssueClient();
-        return issueClient;
+        return result;
     }
 
     @Override
-    public String runCheck(GHPullRequest pullRequest, List<GHObject> comments) {
-        String prTitle = pullRequest.getTitle();
+    public void prefetch(List<GHPullRequest> pullRequests) {
+        issueCache.prefetch(pullRequests.stream()
+                .map(pr -> extractJiraId(pr.getTitle()))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList()));
+    }
+
+    @Override
+    public String runCheck(PullRequestContext context) {
+        String prTitle = context.getTitle();
         String jiraId = extractJiraId(prTitle);
-        if(jiraId == null && !prTitle.contains("hotfix")) {
+        if(jiraId == null) {
+            if(prTitle.contains("hotfix")) {
+                return null;
+            }
             return "**Invalid pull request title: No valid Jira ID provided**";
         }
         // we've got a valid JIRA id: Check if it is assigned.
-        try {
-            Issue jiraIssue = getIssueClient().getIssue(jiraId).get();
-            if(jiraIssue.getAssignee() == null) {
-                return "**This pull request references an unassigned [Jira ticket](https://issues.apache.org/jira/browse/"+jiraId+").** " +
-                        "According to the [code contribution guide](https://flink.apache.org/contributing/contribute-code.html), " +
-                        "tickets need to be assigned before starting with the implementation work.";
-            }
-        } catch (Throwable e) {
-            LOG.warn("Unable to get Jira issue " + jiraId, e);
-            this.issueClient = null;
+        if(Boolean.FALSE.equals(issueCache.isAssigned(jiraId))) {
+            return "**This pull request references an unassigned [Jira ticket](https://issues.apache.org/jira/browse/"+jiraId+").** " +
+                    "According to the [code contribution guide](https://flink.apache.org/contributing/contribute-code.html), " +
+                    "tickets need to be assigned before starting with the implementation work.";
         }
         return null;
     }
 
 
     public static String extractJiraId(String title) {
+        if(title == null) {
+            return null;
+        }
         Matcher matcher = pattern.matcher(title);
         if (matcher.find()) {
             return matcher.group(1).toUpperCase();
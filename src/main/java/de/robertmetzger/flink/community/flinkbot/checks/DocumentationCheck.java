@@ -1,19 +1,15 @@
 package de.robertmetzger.flink.community.flinkbot.checks;
 
 import de.robertmetzger.flink.community.flinkbot.PullRequestCheck;
-import org.kohsuke.github.GHObject;
-import org.kohsuke.github.GHPullRequest;
+import de.robertmetzger.flink.community.flinkbot.PullRequestContext;
 import org.kohsuke.github.GHPullRequestFileDetail;
 
-import java.util.List;
-
 public class DocumentationCheck implements PullRequestCheck {
     @Override
-    public String runCheck(GHPullRequest pullRequest, List<GHObject> comments) {
+    public String runCheck(PullRequestContext context) {
         int mdFiles = 0;
         int zhMdFiles = 0;
-        List<GHPullRequestFileDetail> files = pullRequest.listFiles().asList();
-        for(GHPullRequestFileDetail file: files) {
+        for(GHPullRequestFileDetail file: context.getFiles()) {
             if (!file.getFilename().endsWith(".md")) {
                 continue;
             }
@@ -23,6 +19,10 @@ public class DocumentationCheck implements PullRequestCheck {
             if(file.getFilename().contains("docs/content.zh/")) {
                 zhMdFiles++;
             }
+            if(mdFiles > 0 && zhMdFiles > 0) {
+                // the outcome can not change anymore, no need to fetch the remaining files
+                return null;
+            }
         }
         if(mdFiles == 0) {
             return "No documentation files were touched! Remember to keep the Flink docs up to date!";
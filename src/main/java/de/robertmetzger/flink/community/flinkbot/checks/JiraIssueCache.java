@@ -0,0 +1,172 @@
+package de.robertmetzger.flink.community.flinkbot.checks;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches whether Jira issues are assigned, keyed by the issue key (e.g. FLINK-12345).
+ *
+ * Entries expire after a TTL (unassigned issues sooner than assigned ones, since they are expected to change),
+ * and the least recently used entries are evicted once the cache is full. Issues which do not exist are cached with
+ * the short TTL as well, so that a PR referring to an unknown key does not cause a lookup on every update. Missing
+ * issues can be resolved in batches of {@link #BATCH_SIZE}.
+ */
+public class JiraIssueCache {
+    private static Logger LOG = LoggerFactory.getLogger(JiraIssueCache.class);
+
+    static final int BATCH_SIZE = 50;
+    // after a failed batch, at most this many of its issues are looked up one by one
+    static final int MAX_SINGLE_LOOKUPS = 5;
+
+    /**
+     * Looks up the assignment state of Jira issues.
+     */
+    public interface Resolver {
+        /**
+         * @return for each of the given keys which exists: whether the issue is assigned.
+         * @throws Exception an IOException or TimeoutException (or an exception caused by one) if Jira is unavailable
+         */
+        Map<String, Boolean> resolveAssigned(Collection<String> keys) throws Exception;
+    }
+
+    private static class Entry {
+        // null if the issue does not exist
+        final Boolean assigned;
+        final long expiresAt;
+
+        Entry(Boolean assigned, long expiresAt) {
+            this.assigned = assigned;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final Resolver resolver;
+    private final long assignedTtlMillis;
+    private final long unassignedTtlMillis;
+    private final LongSupplier clock;
+    private final Map<String, Entry> entries;
+
+    public JiraIssueCache(Resolver resolver, long assignedTtlMillis, long unassignedTtlMillis, int maxSize) {
+        this(resolver, assignedTtlMillis, unassignedTtlMillis, maxSize, System::currentTimeMillis);
+    }
+
+    JiraIssueCache(Resolver resolver, long assignedTtlMillis, long unassignedTtlMillis, int maxSize, LongSupplier clock) {
+        this.resolver = resolver;
+        this.assignedTtlMillis = assignedTtlMillis;
+        this.unassignedTtlMillis = unassignedTtlMillis;
+        this.clock = clock;
+        // access ordered, for LRU eviction
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns whether the issue is assigned, or null if the issue does not exist or could not be looked up.
+     */
+    public Boolean isAssigned(String key) {
+        Entry cached = getCached(key);
+        if(cached == null) {
+            resolve(Collections.singletonList(key));
+            cached = getCached(key);
+        }
+        return cached == null ? null : cached.assigned;
+    }
+
+    /**
+     * Resolves all given issues which are not cached yet, with as few requests as possible.
+     */
+    public void prefetch(Collection<String> keys) {
+        List<String> missing = new ArrayList<>();
+        for(String key: new LinkedHashSet<>(keys)) {
+            if(getCached(key) == null) {
+                missing.add(key);
+            }
+        }
+        for(int i = 0; i < missing.size(); i += BATCH_SIZE) {
+            resolve(missing.subList(i, Math.min(missing.size(), i + BATCH_SIZE)));
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private synchronized Entry getCached(String key) {
+        Entry entry = entries.get(key);
+        if(entry == null) {
+            return null;
+        }
+        if(entry.expiresAt <= clock.getAsLong()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * @param assigned null if the issue does not exist
+     */
+    private synchronized void put(String key, Boolean assigned) {
+        long ttl = Boolean.TRUE.equals(assigned) ? assignedTtlMillis : unassignedTtlMillis;
+        entries.put(key, new Entry(assigned, clock.getAsLong() + ttl));
+    }
+
+    /**
+     * @return false if Jira could not be reached
+     */
+    private boolean resolve(List<String> keys) {
+        Map<String, Boolean> resolved;
+        try {
+            resolved = resolver.resolveAssigned(keys);
+        } catch (Throwable t) {
+            if(isUnavailable(t)) {
+                LOG.warn("Unable to reach Jira for issues {}", keys, t);
+                return false;
+            }
+            if(keys.size() == 1) {
+                LOG.info("Jira issue {} does not exist or can not be looked up: {}", keys.get(0), t.getMessage());
+                put(keys.get(0), null);
+                return true;
+            }
+            // a single unknown key fails the whole batch. The keys left out are looked up when they are needed.
+            LOG.debug("Unable to resolve Jira issues {} at once, resolving up to {} of them one by one", keys, MAX_SINGLE_LOOKUPS, t);
+            for(String key: keys.subList(0, Math.min(keys.size(), MAX_SINGLE_LOOKUPS))) {
+                if(!resolve(Collections.singletonList(key))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for(String key: keys) {
+            put(key, resolved.get(key));
+        }
+        return true;
+    }
+
+    /**
+     * Whether the lookup failed because of the network (or a timeout), rather than because of the keys.
+     */
+    private static boolean isUnavailable(Throwable t) {
+        for(Throwable cause = t; cause != null; cause = cause.getCause()) {
+            if(cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
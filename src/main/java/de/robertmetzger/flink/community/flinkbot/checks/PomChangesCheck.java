@@ -1,21 +1,18 @@
 package de.robertmetzger.flink.community.flinkbot.checks;
 
 import de.robertmetzger.flink.community.flinkbot.PullRequestCheck;
-import org.kohsuke.github.GHObject;
-import org.kohsuke.github.GHPullRequest;
+import de.robertmetzger.flink.community.flinkbot.PullRequestContext;
 import org.kohsuke.github.GHPullRequestFileDetail;
 
-import java.util.List;
-
 /**
  * Checks if changes to a pom file were made
  */
 public class PomChangesCheck implements PullRequestCheck {
 
     @Override
-    public String runCheck(GHPullRequest pullRequest, List<GHObject> comments) {
+    public String runCheck(PullRequestContext context) {
         int pomFiles = 0;
-        for(GHPullRequestFileDetail file: pullRequest.listFiles()) {
+        for(GHPullRequestFileDetail file: context.getFiles()) {
             if(file.getFilename().endsWith("pom.xml")) {
                 pomFiles++;
             }
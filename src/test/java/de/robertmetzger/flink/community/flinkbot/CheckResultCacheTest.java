@@ -0,0 +1,120 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+import org.kohsuke.github.GHCommitPointer;
+import org.kohsuke.github.GHPullRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CheckResultCacheTest {
+
+    private static final String SHA = "6586e48ad887669dbb14c26440964a913176ac12";
+    private static final String OTHER_SHA = "0123456789012345678901234567890123456789";
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The checks run again only if the head commit or the title changed
+     */
+    @Test
+    public void testCachedByHeadAndTitle() {
+        AtomicInteger runs = new AtomicInteger();
+        PullRequestCheck[] checks = {context -> "run " + runs.incrementAndGet()};
+        CheckRunner runner = new CheckRunner(checks, 1, 10_000, new CheckResultCache(10, HOUR));
+
+        assertEquals(Collections.singletonList("run 1"), runner.runChecks(context(42, SHA, "[FLINK-1] Title")));
+        assertEquals(Collections.singletonList("run 1"), runner.runChecks(context(42, SHA, "[FLINK-1] Title")));
+        assertEquals(Collections.singletonList("run 2"), runner.runChecks(context(42, OTHER_SHA, "[FLINK-1] Title")));
+        assertEquals(Collections.singletonList("run 3"), runner.runChecks(context(42, OTHER_SHA, "[FLINK-2] Title")));
+        assertEquals(Collections.singletonList("run 4"), runner.runChecks(context(43, SHA, "[FLINK-1] Title")));
+        assertEquals(4, runs.get());
+    }
+
+    /**
+     * Results with unavailable checks are not cached
+     */
+    @Test
+    public void testIncompleteResultsAreNotCached() {
+        AtomicInteger runs = new AtomicInteger();
+        PullRequestCheck[] checks = {context -> {
+            if(runs.incrementAndGet() == 1) {
+                throw new IllegalStateException("Jira is down");
+            }
+            return null;
+        }};
+        CheckRunner runner = new CheckRunner(checks, 1, 10_000, new CheckResultCache(10, HOUR));
+
+        assertEquals(1, runner.runChecks(context(42, SHA, "title")).size());
+        assertEquals(0, runner.runChecks(context(42, SHA, "title")).size());
+        assertEquals(0, runner.runChecks(context(42, SHA, "title")).size());
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void testSeedFromTrackingComment() {
+        CheckResultCache cache = new CheckResultCache(10, HOUR);
+        assertTrue(cache.seed(42, "title", trackingComment(SHA, new Date(), "**2 pom.xml files were touched**: Check for build and licensing issues.", "No documentation files were touched!")));
+        assertEquals(Arrays.asList("**2 pom.xml files were touched**: Check for build and licensing issues.", "No documentation files were touched!"),
+                cache.get(context(42, SHA, "title")));
+        assertNull(cache.get(context(42, SHA, "other title")));
+
+        assertTrue(cache.seed(43, "title", trackingComment(SHA, new Date())));
+        assertEquals(Collections.emptyList(), cache.get(context(43, SHA, "title")));
+    }
+
+    @Test
+    public void testSeedIgnoresUnusableComments() {
+        CheckResultCache cache = new CheckResultCache(10, HOUR);
+        assertFalse(cache.seed(42, "title", trackingComment(SHA, new Date(), "`AssignedJiraCheck` check pending/unavailable.")));
+        assertFalse(cache.seed(42, "title", trackingComment(SHA, new Date(System.currentTimeMillis() - 2 * HOUR))));
+        assertFalse(cache.seed(42, "title", "Thanks a lot for your contribution to the Apache Flink project."));
+        assertFalse(CheckResultCache.disabled().seed(42, "title", trackingComment(SHA, new Date())));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testBounded() {
+        CheckResultCache cache = new CheckResultCache(2, HOUR);
+        for(int prID = 1; prID <= 3; prID++) {
+            cache.put(context(prID, SHA, "title"), Collections.emptyList());
+        }
+        assertEquals(2, cache.size());
+        assertNull(cache.get(context(1, SHA, "title")));
+        assertEquals(Collections.emptyList(), cache.get(context(3, SHA, "title")));
+    }
+
+    private static PullRequestContext context(int prID, String headSha, String title) {
+        GHPullRequest pr = mock(GHPullRequest.class);
+        GHCommitPointer head = mock(GHCommitPointer.class);
+        when(pr.getNumber()).thenReturn(prID);
+        when(pr.getTitle()).thenReturn(title);
+        when(pr.getHead()).thenReturn(head);
+        when(head.getSha()).thenReturn(headSha);
+        return new PullRequestContext(pr, Collections.emptyList());
+    }
+
+    private static String trackingComment(String headSha, Date checkedAt, String... warnings) {
+        StringBuilder comment = new StringBuilder("Thanks a lot for your contribution to the Apache Flink project.\n\n## Automated Checks\n");
+        comment.append("Last check on commit ").append(headSha).append(" (").append(checkedAt).append(")\n\n");
+        if(warnings.length == 0) {
+            comment.append(" ✅no warnings");
+        } else {
+            comment.append("**Warnings:**\n");
+            for(String warning: warnings) {
+                comment.append(" * ").append(warning).append("\n");
+            }
+        }
+        comment.append("\n\n<sub>Mention the bot in a comment to re-run the automated checks.</sub>\n\n## Review Progress\n\n* ❓ 1. The [description] looks good.");
+        return comment.toString();
+    }
+}
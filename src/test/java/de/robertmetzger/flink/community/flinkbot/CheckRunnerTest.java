@@ -0,0 +1,78 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+import org.kohsuke.github.GHPullRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class CheckRunnerTest {
+
+    private static class SlowCheck implements PullRequestCheck {
+        @Override
+        public String runCheck(PullRequestContext context) {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                // cancelled
+            }
+            return "too late";
+        }
+    }
+
+    private static class FailingCheck implements PullRequestCheck {
+        @Override
+        public String runCheck(PullRequestContext context) {
+            throw new IllegalStateException("Jira is down");
+        }
+    }
+
+    /**
+     * Slow or failing checks do not block the others, and warnings keep the order of the checks
+     */
+    @Test
+    public void testDeadline() {
+        PullRequestCheck[] checks = {
+            new SlowCheck(), context -> "first", new FailingCheck(), context -> null, context -> "second"
+        };
+        CheckRunner runner = new CheckRunner(checks, checks.length, 200);
+        PullRequestContext context = new PullRequestContext(mock(GHPullRequest.class), Collections.emptyList());
+
+        long start = System.nanoTime();
+        List<String> warnings = runner.runChecks(context);
+        assertTrue(System.nanoTime() - start < 10_000_000_000L);
+        assertEquals(Arrays.asList(
+            "`SlowCheck` check pending/unavailable.",
+            "first",
+            "`FailingCheck` check pending/unavailable.",
+            "second"), warnings);
+    }
+
+    /**
+     * The deadline of a check starts when it gets a thread, so checks queued behind others are not timed out
+     */
+    @Test
+    public void testQueuedChecksGetTheirOwnDeadline() {
+        PullRequestCheck[] checks = {
+            context -> sleep(200, "first"), context -> sleep(200, "second"), context -> sleep(200, "third")
+        };
+        CheckRunner runner = new CheckRunner(checks, 1, 300);
+        PullRequestContext context = new PullRequestContext(mock(GHPullRequest.class), Collections.emptyList());
+
+        assertEquals(Arrays.asList("first", "second", "third"), runner.runChecks(context));
+    }
+
+    private static String sleep(long millis, String warning) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            // cancelled
+        }
+        return warning;
+    }
+}
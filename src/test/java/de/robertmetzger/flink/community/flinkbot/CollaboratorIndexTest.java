@@ -0,0 +1,70 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CollaboratorIndexTest {
+
+    /**
+     * Collaborators are loaded once per repository and looked up ignoring the case
+     */
+    @Test
+    public void testLookup() throws IOException {
+        AtomicInteger loads = new AtomicInteger();
+        CollaboratorIndex index = new CollaboratorIndex(repository -> {
+            loads.incrementAndGet();
+            return repository.equals("apache/flink") ? Arrays.asList("rmetzger", "StephanEwen") : Arrays.asList("zentol");
+        }, 60_000);
+
+        assertEquals("StephanEwen", index.get("apache/flink", "stephanewen"));
+        assertEquals("rmetzger", index.get("Apache/Flink", "RMetzger"));
+        assertNull(index.get("apache/flink", "zentol"));
+        assertEquals("zentol", index.get("apache/flink-web", "zentol"));
+        assertEquals(2, loads.get());
+    }
+
+    /**
+     * Expired collaborators are reloaded. If that fails, the previous ones are used
+     */
+    @Test
+    public void testReload() throws IOException, InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        CollaboratorIndex index = new CollaboratorIndex(repository -> {
+            switch (loads.incrementAndGet()) {
+                case 1:
+                    return Arrays.asList("rmetzger");
+                case 2:
+                    throw new IOException("GitHub is down");
+                default:
+                    return Arrays.asList("rmetzger", "zentol");
+            }
+        }, 0);
+
+        assertNull(index.get("apache/flink", "zentol"));
+        Thread.sleep(2);
+        // failed reload
+        assertEquals("rmetzger", index.get("apache/flink", "rmetzger"));
+        Thread.sleep(2);
+        assertEquals("zentol", index.get("apache/flink", "zentol"));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testFailedLoad() {
+        CollaboratorIndex index = new CollaboratorIndex(repository -> {
+            throw new IOException("GitHub is down");
+        }, 60_000);
+        try {
+            index.get("apache/flink", "rmetzger");
+            fail("the collaborators are not known");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.apache.commons.lang3.ArrayUtils;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandParserTest {
+    private static final String BOT_NAME = "@flinkbot";
+    private static final String[] ASPECTS = {"description", "consensus", "architecture", "quality"};
+
+    private final CommandParser parser = new CommandParser(BOT_NAME, ASPECTS);
+
+    @Test
+    public void testCommands() {
+        assertEquals("[APPROVE [description, architecture]]", parse("Nice! @flinkbot approve description, architecture."));
+        assertEquals("[APPROVE [description, consensus, architecture, quality]]", parse("@flinkbot approve ALL"));
+        assertEquals("[APPROVE_UNTIL [description, consensus]]", parse("@flinkbot approve-until consensus"));
+        assertEquals("[DISAPPROVE [quality]]", parse("first line\n\n@flinkbot disapprove quality\nlast line"));
+        assertEquals("[ATTENTION [@fhueske, @Zentol]]", parse("@flinkbot attention @FHueske and @Zentol?"));
+        assertEquals("[]", parse("@flinkbot approve everything @flinkbot approve description"));
+        assertEquals("[APPROVE [description, description], DISAPPROVE [description]]",
+                parse("@flinkbot approve description @flinkbot disapprove description"));
+    }
+
+    /**
+     * The parser behaves exactly like the original line-splitting implementation, including its quirks
+     */
+    @Test
+    public void testSameAsLegacyImplementation() {
+        String[] words = {BOT_NAME, BOT_NAME, BOT_NAME, "approve", "APPROVE", "disapprove", "approve-until", "attention",
+                "description", "consensus", "architecture", "quality", "all", "Quality", "@fhueske", "@Zentol", "@",
+                "@x\r", "\r", "", ",", ".", "!?", "description.", "lgtm", "@flinkbotX", "@flink.bot", "\t"};
+        String[] separators = {" ", " ", " ", " ", "  ", "\n", "\r\n", ""};
+        Random random = new Random(1337);
+        for(int run = 0; run < 20_000; run++) {
+            StringBuilder body = new StringBuilder();
+            int length = random.nextInt(12);
+            for(int i = 0; i < length; i++) {
+                body.append(words[random.nextInt(words.length)]);
+                body.append(separators[random.nextInt(separators.length)]);
+            }
+            String comment = body.toString();
+
+            ReviewState expected = new ReviewState();
+            String expectedError = null;
+            try {
+                legacyFoldCommands(expected, comment, "trohrmann");
+            } catch (RuntimeException e) {
+                expectedError = "error";
+            }
+            ReviewState actual = new ReviewState();
+            String actualError = null;
+            try {
+                parser.parse(comment, command -> command.applyTo(actual, "trohrmann"));
+            } catch (RuntimeException e) {
+                actualError = "error";
+            }
+            String message = "Comment: '" + comment.replace("\n", "\\n").replace("\r", "\\r") + "'";
+            assertEquals(message, expected.getApprovals(), actual.getApprovals());
+            assertEquals(message, expected.getAttention(), actual.getAttention());
+            assertEquals(message, expectedError, actualError);
+        }
+    }
+
+    private String parse(String body) {
+        List<BotCommand> commands = new ArrayList<>();
+        parser.parse(body, commands::add);
+        return commands.toString();
+    }
+
+    /**
+     * The implementation of the command parsing before the CommandParser.
+     */
+    private static void legacyFoldCommands(ReviewState reviewState, String commentBody, String commentUserName) {
+        final Map<String, Set<String>> approvals = reviewState.getApprovals();
+        final Set<String> attention = reviewState.getAttention();
+        String[] commentLines = commentBody.split("\n");
+        for(String line: commentLines) {
+            if(line.contains(BOT_NAME)) {
+                line = line.replaceAll("[,.!?]", "");
+                String[] tokens = line.split(" ");
+                for(int i = 0; i < tokens.length; i++) {
+                    if(tokens[i].equals(BOT_NAME)) {
+                        if(i+2 >= tokens.length) {
+                            break;
+                        }
+                        String action = tokens[i+1].toLowerCase().trim();
+                        String approval = tokens[i+2].toLowerCase().trim();
+                        if(action.equals("attention")) {
+                            if(approval.substring(0,1).equals("@")) {
+                                attention.add(approval.trim());
+                            }
+                            for(int j = i + 3; j < tokens.length; j++) {
+                                if(tokens[j].length() > 1 && tokens[j].substring(0,1).equals("@")) {
+                                    attention.add(tokens[j].trim());
+                                }
+                            }
+                        } else if(action.equals("approve") || action.equals("disapprove")) {
+                            if(!ArrayUtils.contains(ASPECTS, approval) && !approval.equals("all")) {
+                                break;
+                            }
+                            List<String> aspects = new ArrayList<>();
+                            if(approval.equals("all")) {
+                                aspects.addAll(Arrays.asList(ASPECTS));
+                            } else {
+                                aspects.add(approval);
+                                for(int j = i + 3; j < tokens.length; j++) {
+                                    if(ArrayUtils.contains(ASPECTS, tokens[j])) {
+                                        aspects.add(tokens[j]);
+                                    }
+                                }
+                            }
+                            for(String aspect: aspects) {
+                                Set<String> approvers = approvals.computeIfAbsent(aspect, a -> new HashSet<>());
+                                if(action.equals("approve")) {
+                                    approvers.add("@" + commentUserName);
+                                } else {
+                                    approvers.remove("@" + commentUserName);
+                                }
+                            }
+                        } else if(action.equals("approve-until")) {
+                            if(!ArrayUtils.contains(ASPECTS, approval)) {
+                                break;
+                            }
+                            for(String approveUntil: ASPECTS) {
+                                approvals.computeIfAbsent(approveUntil, a -> new HashSet<>()).add("@" + commentUserName);
+                                if(approveUntil.equals(approval)) {
+                                    break;
+                                }
+                            }
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CommunityRosterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoles() {
+        CommunityRoles roles = CommunityRoster.fixed(new String[]{"trohrmann", "uce"}, new String[]{"rmetzger", "uce"}).getRoles();
+        assertEquals("@trohrmann [committer]", roles.withRole("@trohrmann"));
+        assertEquals("@rmetzger [PMC]", roles.withRole("@rmetzger"));
+        // committer wins, as before
+        assertEquals(CommunityRoles.Role.COMMITTER, roles.getRole("@uce"));
+        assertEquals("@contributor", roles.withRole("@contributor"));
+        assertNull(roles.getRole("rmetzger"));
+        assertFalse(roles.isCommitterOrPmc("@contributor"));
+    }
+
+    @Test
+    public void testReload() throws Exception {
+        File file = temporaryFolder.newFile("roster.properties");
+        write(file, "committers = trohrmann, uce\npmc = rmetzger\n");
+        CommunityRoster roster = CommunityRoster.fromFile(file);
+        CommunityRoles roles = roster.getRoles();
+        assertEquals("@uce [committer]", roles.withRole("@uce"));
+
+        write(file, "committers = trohrmann\npmc = rmetzger,uce\n");
+        assertTrue(roster.reload());
+        assertEquals("@uce [PMC]", roster.getRoles().withRole("@uce"));
+        // the previous roles are not modified
+        assertEquals("@uce [committer]", roles.withRole("@uce"));
+
+        // keep the roles if the file is gone
+        CommunityRoles current = roster.getRoles();
+        assertTrue(file.delete());
+        assertFalse(roster.reload());
+        assertSame(current, roster.getRoles());
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
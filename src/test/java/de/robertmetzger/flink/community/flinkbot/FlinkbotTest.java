@@ -13,7 +13,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -431,6 +439,222 @@ public class FlinkbotTest {
         Assert.assertEquals("6586e48ad887669dbb14c26440964a913176ac12", match.group(1));
     }
 
+    @Test
+    public void testCommentIdFromNotification() {
+        Assert.assertEquals(492192456L, Flinkbot.getCommentId("https://api.github.com/repos/flinkbot/test-repo/issues/comments/492192456"));
+        // reviews can not be awaited
+        Assert.assertEquals(0L, Flinkbot.getCommentId("https://api.github.com/repos/flinkbot/test-repo/pulls/42"));
+        Assert.assertEquals(0L, Flinkbot.getCommentId(null));
+    }
+
+    /**
+     * A failed listing of the open PRs must not be mistaken for "all PRs have been closed"
+     */
+    @Test
+    public void testFailedListingKeepsKnownPRs() throws IOException {
+        Github gh = getMockedGitHub();
+        when(gh.getAllPullRequests()).thenThrow(new IOException("GitHub is down"));
+        PullRequestStateStore stateStore = PullRequestStateStore.inMemory();
+        stateStore.update(42, state -> state.setTrackingCommentId(1));
+
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, stateStore);
+        bot.checkForNewPRs();
+
+        Assert.assertTrue(stateStore.contains(42));
+        verify(gh, never()).getWriteableRepository();
+    }
+
+    /**
+     * A new PR is checked while a scan is running
+     */
+    @Test
+    public void testNewPRCheckDoesNotWaitForScan() throws Exception {
+        Github gh = getMockedGitHub();
+        GHPullRequest pr = getMockedPullRequest();
+        when(pr.getNumber()).thenReturn(7);
+        GHCommitPointer head = mock(GHCommitPointer.class);
+        when(head.getSha()).thenReturn("6586e48ad887669dbb14c26440964a913176ac12");
+        when(pr.getHead()).thenReturn(head);
+        when(pr.getComments()).thenReturn(new ArrayList<>());
+        when(pr.comment(any())).thenThrow(new IOException("GitHub is down"));
+        when(gh.getPullRequest(7)).thenReturn(pr);
+        CountDownLatch scanning = new CountDownLatch(1);
+        CountDownLatch listed = new CountDownLatch(1);
+        when(gh.getAllPullRequests()).then(invocation -> {
+            scanning.countDown();
+            listed.await();
+            return new ArrayList<>();
+        });
+        PullRequestStateStore stateStore = PullRequestStateStore.inMemory();
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, stateStore);
+
+        CompletableFuture<Void> scan = CompletableFuture.runAsync(bot::checkForNewPRs);
+        scanning.await();
+        CompletableFuture.runAsync(() -> {
+            try {
+                bot.checkNewPR(7);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }).get(10, TimeUnit.SECONDS);
+        verify(pr).comment(any());
+        listed.countDown();
+        scan.get(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * The labels are only read and written if the review label changes, and labels added meanwhile are kept
+     */
+    @Test
+    public void testLabelsAreReplacedOnce() throws IOException {
+        Github gh = getMockedGitHub();
+        GHIssue issue = gh.getWriteableRepository().getIssue(666);
+        PullRequestStateStore stateStore = PullRequestStateStore.inMemory();
+        stateStore.update(666, state -> state.setLabel("review=description?"));
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, stateStore);
+
+        bot.updateLabels(Collections.emptyMap(), 666, issue);
+        verify(gh, never()).getLabels(666);
+        verify(gh, never()).replaceLabels(eq(666), any());
+
+        // added by somebody meanwhile
+        issue.addLabels(TestGHIssue.label("review=description?"), TestGHIssue.label("component=Runtime"), TestGHIssue.label("review=quality?"));
+        Map<String, Set<String>> approvals = Collections.singletonMap("description", Collections.singleton("@fhueske"));
+        bot.updateLabels(approvals, 666, issue);
+        verify(gh, times(1)).replaceLabels(eq(666), any());
+        assertEquals("component=Runtime,review=consensus?", getLabelsFromMock(gh));
+        assertEquals("review=consensus?", stateStore.get(666).getLabel());
+
+        bot.updateLabels(approvals, 666, issue);
+        verify(gh, times(1)).getLabels(666);
+    }
+
+    /**
+     * The bot only remembers the reviewers it has requested itself, and does not request them again after they have
+     * reviewed, unless their attention is requested anew
+     */
+    @Test
+    public void testAttentionRequestsAreDiffed() throws IOException {
+        Github gh = getMockedGitHub();
+        when(gh.getCollaborator(any())).then(invocation -> invocation.getArgument(0));
+        PullRequestStateStore stateStore = PullRequestStateStore.inMemory();
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, stateStore);
+        Set<String> attention = new HashSet<>(Arrays.asList("@uce", "@rmetzger", "@trohrmann"));
+        GHPullRequest pr = getMockedPullRequest();
+        GHUser author = user("trohrmann");
+        GHUser uce = user("uce");
+        GHUser rmetzger = user("rmetzger");
+        when(pr.getUser()).thenReturn(author);
+
+        // rmetzger has been requested by somebody else, trohrmann is the author
+        when(pr.getRequestedReviewers()).thenReturn(Collections.singletonList(rmetzger));
+        bot.addAttentionToReviewers(attention, pr, 666);
+        verify(gh).requestReviewers(666, Collections.singletonList("uce"));
+        assertEquals(Collections.singleton("uce"), stateStore.get(666).getRequestedReviewers());
+
+        // still pending
+        when(pr.getRequestedReviewers()).thenReturn(Arrays.asList(rmetzger, uce));
+        bot.addAttentionToReviewers(attention, pr, 666);
+        verify(gh, times(1)).requestReviewers(eq(666), any());
+
+        // uce has reviewed, and is mentioned again later: no new request
+        when(pr.getRequestedReviewers()).thenReturn(Collections.singletonList(rmetzger));
+        bot.addAttentionToReviewers(attention, pr, 666);
+        verify(gh, times(1)).requestReviewers(eq(666), any());
+
+        // the attention request has been withdrawn, and is made anew
+        bot.addAttentionToReviewers(Collections.singleton("@rmetzger"), pr, 666);
+        assertEquals(Collections.emptySet(), stateStore.get(666).getRequestedReviewers());
+        bot.addAttentionToReviewers(attention, pr, 666);
+        verify(gh, times(2)).requestReviewers(666, Collections.singletonList("uce"));
+    }
+
+    /**
+     * Folding the new comments incrementally leads to the same review state as folding all of them at once
+     */
+    @Test
+    public void testIncrementalFoldEqualsFullFold() throws IOException {
+        List<ThreadComment> comments = Arrays.asList(
+                threadComment(11, "@flinkbot approve description", "fhueske", 1000),
+                threadComment(12, "@flinkbot approve consensus", "rmetzger", 2000),
+                threadComment(13, "@flinkbot disapprove description", "fhueske", 3000),
+                threadComment(14, "@flinkbot approve description architecture", "uce", 4000));
+        List<ThreadComment> visible = new ArrayList<>();
+
+        Github gh = getMockedGitHub();
+        mockCommentsSince(gh, visible);
+        PullRequestStateStore all = incrementalStateStore(new Date(0), 0);
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, all);
+        visible.addAll(comments);
+        bot.processPullRequest(getIncrementalPullRequest());
+
+        PullRequestStateStore incremental = incrementalStateStore(new Date(0), 0);
+        bot = new Flinkbot(gh, committer, pmc, incremental);
+        visible.clear();
+        visible.addAll(comments.subList(0, 2));
+        bot.processPullRequest(getIncrementalPullRequest());
+        visible.clear();
+        visible.addAll(comments);
+        bot.processPullRequest(getIncrementalPullRequest());
+
+        ReviewState expected = all.get(666).getReviewState();
+        assertEquals(Collections.singleton("@uce"), expected.getApprovals().get("description"));
+        assertEquals(expected.getApprovals(), incremental.get(666).getReviewState().getApprovals());
+        assertEquals(expected.getAttention(), incremental.get(666).getReviewState().getAttention());
+        assertEquals(all.get(666).getCursor(), incremental.get(666).getCursor());
+        assertEquals(14, incremental.get(666).getLastCommentId());
+    }
+
+    /**
+     * An edited comment rebuilds the review state from all comments, instead of folding the edit
+     */
+    @Test
+    public void testEditedCommentTriggersRebuild() throws IOException {
+        Github gh = getMockedGitHub();
+        List<ThreadComment> visible = new ArrayList<>();
+        mockCommentsSince(gh, visible);
+        PullRequestStateStore stateStore = incrementalStateStore(new Date(2000), 12);
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, stateStore);
+
+        // the bot's own edits of the tracking comment don't matter
+        visible.add(threadComment(1, TRACKING_MESSAGE, "flinkbot", 3000));
+        GHPullRequest pr = getIncrementalPullRequest();
+        bot.processPullRequest(pr);
+        verify(pr, never()).getComments();
+
+        visible.add(threadComment(11, "@flinkbot approve all", "fhueske", 4000));
+        pr = getIncrementalPullRequest();
+        bot.processPullRequest(pr);
+        verify(pr).getComments();
+        Assert.assertTrue(stateStore.get(666).getReviewState().getApprovals().isEmpty());
+    }
+
+    /**
+     * The cursor never moves backwards, even if a new comment carries an older update time
+     */
+    @Test
+    public void testCursorOnlyMovesForward() throws IOException {
+        Github gh = getMockedGitHub();
+        List<ThreadComment> visible = new ArrayList<>();
+        mockCommentsSince(gh, visible);
+        PullRequestStateStore stateStore = incrementalStateStore(new Date(5000), 12);
+        Flinkbot bot = new Flinkbot(gh, committer, pmc, stateStore);
+
+        // listed although it is older than the cursor, e.g. because GitHub's clocks differ
+        when(gh.getCommentsSince(eq(666), any())).thenReturn(Collections.singletonList(
+                threadComment(13, "@flinkbot approve description", "fhueske", 4000)));
+        bot.processPullRequest(getIncrementalPullRequest());
+        assertEquals(new Date(5000), stateStore.get(666).getCursor());
+        assertEquals(13, stateStore.get(666).getLastCommentId());
+        assertEquals(Collections.singleton("@fhueske"), stateStore.get(666).getReviewState().getApprovals().get("description"));
+
+        when(gh.getCommentsSince(eq(666), any())).thenReturn(Collections.singletonList(
+                threadComment(14, "@flinkbot approve consensus", "fhueske", 6000)));
+        bot.processPullRequest(getIncrementalPullRequest());
+        assertEquals(new Date(6000), stateStore.get(666).getCursor());
+        assertEquals(14, stateStore.get(666).getLastCommentId());
+    }
+
     // ------------------------------------ testing tools ------------------------------------
 
     private static GHIssueComment createComment(String body, String user) {
@@ -466,6 +690,12 @@ public class FlinkbotTest {
         public void addLabels(GHLabel... names) throws IOException {
             myLabels.addAll(Arrays.asList(names));
         }
+
+        static GHLabel label(String name) {
+            GHLabel label = mock(GHLabel.class);
+            when(label.getName()).thenReturn(name);
+            return label;
+        }
     }
 
     private static Github getMockedGitHub() throws IOException {
@@ -473,8 +703,15 @@ public class FlinkbotTest {
         when(gh.getBotName()).thenReturn("flinkbot");
         GHRepository repo = mock(GHRepository.class);
         when(gh.getWriteableRepository()).thenReturn(repo);
-        GHIssue issue = new TestGHIssue(repo);
+        TestGHIssue issue = new TestGHIssue(repo);
         when(repo.getIssue(666)).thenReturn(issue);
+        when(gh.getLabels(666)).then(invocation -> issue.getLabels().stream().map(GHLabel::getName).collect(Collectors.toList()));
+        doAnswer(invocation -> {
+            Collection<String> names = invocation.getArgument(1);
+            issue.getLabels().clear();
+            issue.addLabels(names.stream().map(TestGHIssue::label).toArray(GHLabel[]::new));
+            return null;
+        }).when(gh).replaceLabels(eq(666), any());
         when(repo.getLabel(any())).then((Answer<GHLabel>) invocation -> {
             String name = invocation.getArgument(0);
             GHLabel answer = mock(GHLabel.class);
@@ -489,6 +726,55 @@ public class FlinkbotTest {
         return pr;
     }
 
+    private static GHUser user(String login) {
+        GHUser user = mock(GHUser.class);
+        when(user.getLogin()).thenReturn(login);
+        return user;
+    }
+
+    private static ThreadComment threadComment(long id, String body, String author, long updatedAt) {
+        return new ThreadComment(id, author, body, new Date(updatedAt), new Date(updatedAt));
+    }
+
+    /**
+     * Lists the visible comments which have been updated since the given time (inclusive), like GitHub.
+     */
+    private static void mockCommentsSince(Github gh, List<ThreadComment> visible) throws IOException {
+        when(gh.getCommentsSince(eq(666), any())).then(invocation -> {
+            Date since = invocation.getArgument(1);
+            return visible.stream().filter(comment -> !comment.getUpdatedAt().before(since)).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * A state store with the folded review state of PR 666, so that updates only process the new comments.
+     */
+    private static PullRequestStateStore incrementalStateStore(Date cursor, long lastCommentId) {
+        PullRequestStateStore stateStore = PullRequestStateStore.inMemory();
+        stateStore.update(666, state -> {
+            state.setTrackingCommentId(1);
+            state.setReviewState(new ReviewState());
+            state.setCursor(cursor);
+            state.setLastCommentId(lastCommentId);
+        });
+        return stateStore;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GHPullRequest getIncrementalPullRequest() throws IOException {
+        GHPullRequest pr = getMockedPullRequest();
+        when(pr.getNumber()).thenReturn(666);
+        GHCommitPointer head = mock(GHCommitPointer.class);
+        when(head.getSha()).thenReturn("6586e48ad887669dbb14c26440964a913176ac12");
+        when(pr.getHead()).thenReturn(head);
+        PagedIterable<GHPullRequestReview> reviews = mock(PagedIterable.class);
+        when(reviews._iterator(anyInt())).thenReturn(mock(PagedIterator.class));
+        when(reviews.asList()).thenReturn(new ArrayList<>());
+        when(pr.listReviews()).thenReturn(reviews);
+        when(pr.getComments()).thenReturn(new ArrayList<>());
+        return pr;
+    }
+
     private static String getLabelsFromMock(Github gh) throws IOException {
         return gh.getWriteableRepository().getIssue(666).getLabels()
                 .stream()
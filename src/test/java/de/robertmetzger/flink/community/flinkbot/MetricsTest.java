@@ -0,0 +1,74 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsTest {
+
+    @Test
+    public void testScrape() {
+        Metrics.Counter counter = Metrics.counter("test_requests_total", "Requests.", "client", "operation");
+        counter.inc("direct", "GET /repos/{repo}/pulls/{n}");
+        counter.inc("direct", "GET /repos/{repo}/pulls/{n}");
+        counter.inc("write", "PATCH \"quoted\"");
+        assertEquals(2, Metrics.counter("test_requests_total", "Requests.", "client", "operation").get("direct", "GET /repos/{repo}/pulls/{n}"));
+
+        Metrics.Histogram histogram = Metrics.histogram("test_duration_seconds", "Durations.");
+        histogram.observe(0.02);
+        histogram.observe(3);
+        histogram.observe(100);
+
+        Metrics.gauge("test_queue_size", "Queue.", "queue").set(() -> 7, "checks");
+
+        String scrape = Metrics.scrape();
+        assertTrue(scrape, scrape.contains("# TYPE test_requests_total counter\n"));
+        assertTrue(scrape, scrape.contains("test_requests_total{client=\"direct\",operation=\"GET /repos/{repo}/pulls/{n}\"} 2\n"));
+        assertTrue(scrape, scrape.contains("test_requests_total{client=\"write\",operation=\"PATCH \\\"quoted\\\"\"} 1\n"));
+        assertTrue(scrape, scrape.contains("# TYPE test_duration_seconds histogram\n"));
+        assertTrue(scrape, scrape.contains("test_duration_seconds_bucket{le=\"0.01\"} 0\n"));
+        assertTrue(scrape, scrape.contains("test_duration_seconds_bucket{le=\"0.025\"} 1\n"));
+        assertTrue(scrape, scrape.contains("test_duration_seconds_bucket{le=\"5\"} 2\n"));
+        assertTrue(scrape, scrape.contains("test_duration_seconds_bucket{le=\"60\"} 2\n"));
+        assertTrue(scrape, scrape.contains("test_duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(scrape, scrape.contains("test_duration_seconds_count 3\n"));
+        assertTrue(scrape, scrape.contains("test_queue_size{queue=\"checks\"} 7\n"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelsMustMatch() {
+        Metrics.counter("test_labels_total", "Labels.", "client").inc("direct", "too many");
+    }
+
+    @Test
+    public void testServer() throws Exception {
+        Metrics.counter("test_served_total", "Served.").inc();
+        MetricsServer server = new MetricsServer(0);
+        server.start();
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + MetricsServer.PATH).openConnection();
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+            try (InputStream in = connection.getInputStream()) {
+                String body = new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+                assertTrue(body, body.contains("test_served_total 1\n"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testOperation() {
+        assertEquals("GET /repos/{repo}/issues/{n}/comments", Github.operation("apache/flink", "GET", "/repos/apache/flink/issues/8222/comments"));
+        assertEquals("GET /repos/{repo}", Github.operation("apache/flink", "GET", "/repos/apache/flink"));
+        assertEquals("GET /repos/apache/flink-web/pulls", Github.operation("apache/flink", "GET", "/repos/apache/flink-web/pulls"));
+    }
+}
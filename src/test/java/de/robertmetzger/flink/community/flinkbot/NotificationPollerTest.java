@@ -0,0 +1,95 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NotificationPollerTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private final Github gh = mock(Github.class);
+    private final Flinkbot bot = mock(Flinkbot.class);
+    private final Map<String, Flinkbot> bots = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * Mentions are handed to the bot of their repository, all notifications are marked as read
+     */
+    @Test
+    public void testMentionsAreHandedToBots() throws IOException {
+        bots.put("apache/flink", bot);
+        File cursorFile = new File(tmp.newFolder(), "notifications-cursor");
+        NotificationPoller poller = new NotificationPoller(gh, bots, cursorFile);
+        long now = System.currentTimeMillis();
+        when(gh.getNotifications(eq(new Date(0)), isNull())).thenReturn(new Notification.Page(Arrays.asList(
+                new Notification(1, "apache/flink", "mention", 42, "https://api.github.com/repos/apache/flink/issues/comments/1337", new Date(now)),
+                new Notification(2, "apache/flink", "subscribed", 43, null, new Date(now)),
+                new Notification(3, "apache/other", "mention", 44, null, new Date(now))),
+                "Thu, 01 Jan 2019 00:00:00 GMT", 60));
+
+        assertEquals(60_000, poller.poll());
+        long polled = System.currentTimeMillis();
+        verify(bot).schedulePullRequestUpdate(42, 1337, false);
+        verify(bot, never()).schedulePullRequestUpdate(eq(43), anyLong(), anyBoolean());
+        verify(gh).markNotificationRead(1);
+        verify(gh).markNotificationRead(2);
+        verify(gh).markNotificationRead(3);
+        assertEquals(0, poller.getBacklog());
+
+        // the cursor lags behind, and survives a restart
+        Date cursor = poller.getCursor();
+        assertTrue(cursor.getTime() >= now - NotificationPoller.CURSOR_LAG_MILLIS);
+        assertTrue(cursor.getTime() <= polled - NotificationPoller.CURSOR_LAG_MILLIS);
+        assertEquals(cursor, new NotificationPoller(gh, bots, cursorFile).getCursor());
+
+        // the next poll is conditional
+        when(gh.getNotifications(cursor, "Thu, 01 Jan 2019 00:00:00 GMT")).thenReturn(new Notification.Page(null, "Thu, 01 Jan 2019 00:00:00 GMT", 120));
+        assertEquals(120_000, poller.poll());
+        assertEquals(cursor, poller.getCursor());
+    }
+
+    /**
+     * A notification which could not be marked as read is listed again, unconditionally
+     */
+    @Test
+    public void testFailedNotificationIsListedAgain() throws IOException {
+        bots.put("apache/flink", bot);
+        NotificationPoller poller = new NotificationPoller(gh, bots, null);
+        Date updatedAt = new Date(System.currentTimeMillis() - 3_600_000);
+        when(gh.getNotifications(any(), any())).thenReturn(new Notification.Page(
+                Collections.singletonList(new Notification(1, "apache/flink", "mention", 42, null, updatedAt)),
+                "Thu, 01 Jan 2019 00:00:00 GMT", 60));
+        doThrow(new IOException("GitHub is down")).when(gh).markNotificationRead(1);
+
+        poller.poll();
+        assertTrue(poller.getCursor().before(updatedAt));
+        assertEquals(1, poller.getBacklog());
+        poller.poll();
+        verify(gh).getNotifications(new Date(0), null);
+        verify(gh).getNotifications(poller.getCursor(), null);
+        verify(bot, never()).schedulePullRequestUpdate(anyInt(), anyLong(), eq(true));
+    }
+}
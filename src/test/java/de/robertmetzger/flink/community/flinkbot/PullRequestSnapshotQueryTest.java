@@ -0,0 +1,149 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the query against a local stub of the GraphQL API.
+ */
+public class PullRequestSnapshotQueryTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private HttpServer server;
+    // the response per page, selected by the cursor
+    private final List<String> pages = new ArrayList<>();
+    private final List<JsonNode> requests = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/graphql", exchange -> {
+            JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+            requests.add(request);
+            JsonNode cursor = request.path("variables").path("cursor");
+            String page = pages.get(cursor.isNull() ? 0 : Integer.parseInt(cursor.asText()));
+            byte[] body = page.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testFetch() throws IOException {
+        pages.add(page(true, "1",
+                pr(12, "a", "[\"review=consensus?\", \"bug\"]", 2,
+                        comment(100, "flinkbot", "Thanks a lot"), comment(101, "rmetzger", "@flinkbot approve all")),
+                pr(11, "b", "[]", 11, comment(90, "contributor", "ping"))));
+        pages.add(page(true, "2",
+                pr(10, "c", "[]", 0),
+                pr(3, "d", "[]", 0)));
+        pages.add(page(false, null, pr(2, "e", "[]", 0)));
+
+        List<PullRequestSnapshot> snapshots = query().fetch("apache/flink", 5, "flinkbot");
+
+        assertEquals(3, snapshots.size());
+        PullRequestSnapshot first = snapshots.get(0);
+        assertEquals(12, first.getNumber());
+        assertEquals("a", first.getHeadSha());
+        assertEquals(Arrays.asList("review=consensus?", "bug"), first.getLabels());
+        assertEquals(1, first.getBotComments().size());
+        assertEquals(100, first.getBotComments().get(0).getId());
+        assertEquals("Thanks a lot", first.getBotComments().get(0).getBody());
+        assertTrue(first.isAllCommentsFetched());
+
+        assertTrue(snapshots.get(1).getBotComments().isEmpty());
+        assertFalse(snapshots.get(1).isAllCommentsFetched());
+        assertEquals(10, snapshots.get(2).getNumber());
+
+        // the third page is not requested, it only contains PRs below the minimum
+        assertEquals(2, requests.size());
+        assertEquals("apache", requests.get(0).path("variables").path("owner").asText());
+        assertEquals("flink", requests.get(0).path("variables").path("name").asText());
+        assertTrue(requests.get(0).path("variables").path("cursor").isNull());
+        assertEquals("1", requests.get(1).path("variables").path("cursor").asText());
+    }
+
+    @Test
+    public void testErrors() {
+        pages.add("{\"data\": null, \"errors\": [{\"message\": \"Something went wrong\"}]}");
+        try {
+            query().fetch("apache/flink", 0, "flinkbot");
+            fail("Expected an exception");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Something went wrong"));
+        }
+    }
+
+    @Test
+    public void testDeletedAuthor() throws IOException {
+        pages.add(page(false, null, "{\"number\": 7, \"headRefOid\": null, \"labels\": {\"nodes\": []}, " +
+                "\"comments\": {\"totalCount\": 1, \"nodes\": [{\"databaseId\": 1, \"author\": null, \"body\": \"x\", " +
+                "\"createdAt\": \"2019-05-24T14:00:00Z\", \"updatedAt\": \"2019-05-24T14:00:00Z\"}]}}"));
+        PullRequestSnapshot snapshot = query().fetch("apache/flink", 0, "flinkbot").get(0);
+        assertNull(snapshot.getHeadSha());
+        assertTrue(snapshot.getBotComments().isEmpty());
+    }
+
+    private PullRequestSnapshotQuery query() {
+        return new PullRequestSnapshotQuery(new OkHttpClient(), "http://localhost:" + server.getAddress().getPort() + "/graphql", "Basic test");
+    }
+
+    private static String page(boolean hasNextPage, String endCursor, String... prs) {
+        return "{\"data\": {\"repository\": {\"pullRequests\": {" +
+                "\"pageInfo\": {\"hasNextPage\": " + hasNextPage + ", \"endCursor\": " + (endCursor == null ? "null" : "\"" + endCursor + "\"") + "}, " +
+                "\"nodes\": [" + String.join(", ", prs) + "]}}}}";
+    }
+
+    private static String pr(int number, String sha, String labels, int totalComments, String... comments) {
+        StringBuilder labelNodes = new StringBuilder();
+        for(JsonNode label: readTree(labels)) {
+            if(labelNodes.length() > 0) {
+                labelNodes.append(", ");
+            }
+            labelNodes.append("{\"name\": \"").append(label.asText()).append("\"}");
+        }
+        return "{\"number\": " + number + ", \"headRefOid\": \"" + sha + "\", \"labels\": {\"nodes\": [" + labelNodes + "]}, " +
+                "\"comments\": {\"totalCount\": " + totalComments + ", \"nodes\": [" + String.join(", ", comments) + "]}}";
+    }
+
+    private static String comment(long id, String author, String body) {
+        return "{\"databaseId\": " + id + ", \"author\": {\"login\": \"" + author + "\"}, \"body\": \"" + body + "\", " +
+                "\"createdAt\": \"2019-05-24T14:00:00Z\", \"updatedAt\": \"2019-05-24T14:00:00Z\"}";
+    }
+
+    private static JsonNode readTree(String json) {
+        try {
+            return MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
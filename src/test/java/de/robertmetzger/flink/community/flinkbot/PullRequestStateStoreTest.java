@@ -0,0 +1,80 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PullRequestStateStoreTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * A restarted store sees all flushed PRs again
+     */
+    @Test
+    public void testRestoreAfterFlush() throws IOException {
+        File file = new File(tmp.newFolder(), "state.json");
+        PullRequestStateStore store = new PullRequestStateStore(file);
+        store.update(42, state -> {
+            state.setTrackingCommentId(1337L);
+            state.setHeadSha("6586e48ad887669dbb14c26440964a913176ac12");
+        });
+        store.update(42, state -> state.setLabel("review=description?"));
+        store.update(43, state -> state.setTrackingCommentId(1338L));
+        store.flush();
+
+        PullRequestStateStore restored = new PullRequestStateStore(file);
+        assertEquals(2, restored.size());
+        PullRequestState state = restored.get(42);
+        assertEquals(1337L, state.getTrackingCommentId());
+        assertEquals("6586e48ad887669dbb14c26440964a913176ac12", state.getHeadSha());
+        assertEquals("review=description?", state.getLabel());
+        assertTrue(restored.contains(43));
+    }
+
+    /**
+     * Closed PRs are removed, unflushed changes are lost
+     */
+    @Test
+    public void testRetainAndUnflushedChanges() throws IOException {
+        File file = new File(tmp.newFolder(), "state.json");
+        PullRequestStateStore store = new PullRequestStateStore(file);
+        store.update(1, state -> state.setTrackingCommentId(1L));
+        store.update(2, state -> state.setTrackingCommentId(2L));
+        store.retainAll(Collections.singleton(2));
+        store.flush();
+        store.update(3, state -> state.setTrackingCommentId(3L));
+
+        PullRequestStateStore restored = new PullRequestStateStore(file);
+        assertFalse(restored.contains(1));
+        assertTrue(restored.contains(2));
+        assertNull(restored.get(3));
+    }
+
+    /**
+     * Changes to a returned state do not reach the store, only updates do
+     */
+    @Test
+    public void testGetReturnsCopy() throws IOException {
+        File file = new File(tmp.newFolder(), "state.json");
+        PullRequestStateStore store = new PullRequestStateStore(file);
+        store.update(42, state -> state.getRequestedReviewers().add("uce"));
+
+        PullRequestState state = store.get(42);
+        state.setLabel("review=description?");
+        state.getRequestedReviewers().add("rmetzger");
+
+        assertNull(store.get(42).getLabel());
+        assertEquals(Collections.singleton("uce"), store.get(42).getRequestedReviewers());
+    }
+}
@@ -0,0 +1,189 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RateLimitSchedulerTest {
+
+    /**
+     * Background requests are deferred until a new rate limit window starts once the budget drops to the reserve,
+     * without waiting for it
+     */
+    @Test
+    public void testBackgroundIsDeferred() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(100);
+        RateLimitScheduler.Budget budget = scheduler.getBudget("flinkbot");
+        long reset = System.currentTimeMillis() / 1000 + 3600;
+        budget.update(5000, 101, reset);
+        assertFalse(scheduler.isDeferred("flinkbot"));
+        assertTrue(budget.acquire(RateLimitScheduler.Priority.BACKGROUND));
+
+        assertTrue(scheduler.isDeferred("flinkbot"));
+        assertFalse(budget.acquire(RateLimitScheduler.Priority.BACKGROUND));
+        assertEquals(100, scheduler.getRemaining("flinkbot"));
+
+        // interactive work uses the reserve
+        assertTrue(budget.acquire(RateLimitScheduler.Priority.INTERACTIVE));
+        assertEquals(99, scheduler.getRemaining("flinkbot"));
+
+        // the next window starts
+        budget.update(5000, 5000, reset + 3600);
+        assertFalse(scheduler.isDeferred("flinkbot"));
+        assertTrue(budget.acquire(RateLimitScheduler.Priority.BACKGROUND));
+        assertEquals(4999, scheduler.getRemaining("flinkbot"));
+    }
+
+    /**
+     * A deferred background request fails, instead of blocking the thread until the rate limit resets
+     */
+    @Test
+    public void testDeferredRequestFails() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(100);
+        scheduler.getBudget("flinkbot").update(5000, 100, System.currentTimeMillis() / 1000 + 3600);
+        Interceptor interceptor = scheduler.interceptor("flinkbot");
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(new Request.Builder().url("https://api.github.com/repos/apache/flink/pulls").build());
+
+        List<Exception> failures = new ArrayList<>();
+        RateLimitScheduler.runInBackground(() -> {
+            try {
+                interceptor.intercept(chain);
+            } catch (Exception e) {
+                failures.add(e);
+            }
+        });
+        assertEquals(1, failures.size());
+        assertTrue(failures.get(0) instanceof RateLimitScheduler.DeferredException);
+        verify(chain, never()).proceed(any());
+    }
+
+    /**
+     * Revalidations answered with 304 are not charged, and the budget follows the most recent response
+     */
+    @Test
+    public void testNotModifiedIsFree() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(100);
+        long reset = System.currentTimeMillis() / 1000 + 3600;
+        scheduler.getBudget("flinkbot").update(5000, 200, reset, 1000);
+        Interceptor interceptor = scheduler.interceptor("flinkbot");
+        Request request = new Request.Builder().url("https://api.github.com/repos/apache/flink/pulls/1")
+                .header("If-None-Match", "\"v1\"").build();
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any())).thenAnswer(invocation -> new Response.Builder().request(request)
+                .protocol(Protocol.HTTP_1_1).code(304).message("Not Modified").build());
+
+        for(int i = 0; i < 500; i++) {
+            RateLimitScheduler.runInBackground(() -> {
+                try {
+                    interceptor.intercept(chain);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        assertEquals(200, scheduler.getRemaining("flinkbot"));
+        assertFalse(scheduler.isDeferred("flinkbot"));
+
+        // the budget GitHub reports wins over our own accounting, unless the response has been overtaken
+        scheduler.getBudget("flinkbot").update(5000, 4000, reset, 3000);
+        assertEquals(4000, scheduler.getRemaining("flinkbot"));
+        scheduler.getBudget("flinkbot").update(5000, 4100, reset, 2000);
+        assertEquals(4000, scheduler.getRemaining("flinkbot"));
+    }
+
+    /**
+     * Fewer requests are in flight at the same time as the budget runs low
+     */
+    @Test
+    public void testConcurrencyFollowsBudget() {
+        RateLimitScheduler scheduler = new RateLimitScheduler(100, 32);
+        RateLimitScheduler.Budget budget = scheduler.getBudget("flinkbot");
+        assertEquals(32, budget.getConcurrencyLimit());
+        long reset = System.currentTimeMillis() / 1000 + 3600;
+        budget.update(5000, 5000, reset);
+        assertEquals(32, budget.getConcurrencyLimit());
+        budget.update(5000, 1250, reset);
+        assertEquals(8, budget.getConcurrencyLimit());
+        budget.update(5000, 10, reset);
+        assertEquals(1, budget.getConcurrencyLimit());
+        // the next window starts
+        budget.update(5000, 4999, reset + 3600);
+        assertEquals(31, budget.getConcurrencyLimit());
+    }
+
+    @Test
+    public void testPriorityIsInherited() throws Exception {
+        List<Callable<RateLimitScheduler.Priority>> wrapped = new ArrayList<>();
+        RateLimitScheduler.runInBackground(() -> wrapped.add(RateLimitScheduler.withCurrentPriority(RateLimitScheduler::currentPriority)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(RateLimitScheduler.Priority.BACKGROUND, executor.submit(wrapped.get(0)).get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(RateLimitScheduler.Priority.INTERACTIVE, RateLimitScheduler.currentPriority());
+    }
+
+    /**
+     * No more requests of a credential are in flight than allowed, no matter how many threads make requests
+     */
+    @Test
+    public void testConcurrentRequestsAreLimited() throws Exception {
+        RateLimitScheduler scheduler = new RateLimitScheduler(100, 2);
+        Interceptor interceptor = scheduler.interceptor("flinkbot");
+        Request request = new Request.Builder().url("https://api.github.com/notifications").build();
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(request);
+        when(chain.proceed(any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inFlight.decrementAndGet();
+            return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK").build();
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Response>> responses = new ArrayList<>();
+            for(int i = 0; i < 8; i++) {
+                responses.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return interceptor.intercept(chain);
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }, executor));
+            }
+            for(CompletableFuture<Response> response: responses) {
+                assertEquals(200, response.get(10, TimeUnit.SECONDS).code());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2, maxInFlight.get());
+    }
+}
@@ -0,0 +1,111 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.sun.net.httpserver.HttpServer;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+public class ResponseCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private HttpServer server;
+    private final AtomicReference<String> body = new AtomicReference<>("[1]");
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void startServer() throws IOException {
+        // answers like GitHub: cacheable for 60 seconds, with an ETag
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/comments", exchange -> {
+            String etag = "\"" + body.get().hashCode() + "\"";
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "private, max-age=60");
+            if(etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                byte[] bytes = body.get().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testRevalidate() throws IOException {
+        ResponseCache cache = new ResponseCache(temporaryFolder.newFolder("cache"), 1, 2);
+        OkHttpClient direct = new OkHttpClient.Builder()
+                .cache(cache.getCache())
+                .addNetworkInterceptor(cache.revalidate())
+                .build();
+
+        assertEquals(ResponseCache.Result.MISS, get(cache, direct, "[1]"));
+        // within max-age, but the latest data is required: free 304
+        assertEquals(ResponseCache.Result.REVALIDATED, get(cache, direct, "[1]"));
+        assertEquals(1, notModified.get());
+
+        body.set("[1,2]");
+        assertEquals(ResponseCache.Result.CHANGED, get(cache, direct, "[1,2]"));
+        assertEquals(ResponseCache.Result.REVALIDATED, get(cache, direct, "[1,2]"));
+
+        // gone from the cache
+        cache.getCache().evictAll();
+        assertEquals(ResponseCache.Result.EVICTED, get(cache, direct, "[1,2]"));
+    }
+
+    @Test
+    public void testCachedClient() throws IOException {
+        ResponseCache cache = new ResponseCache(temporaryFolder.newFolder("cache"), 1, 2);
+        OkHttpClient cached = new OkHttpClient.Builder().cache(cache.getCache()).build();
+
+        assertEquals(ResponseCache.Result.MISS, get(cache, cached, "[1]"));
+        body.set("[1,2]");
+        // the cached client accepts responses up to max-age
+        assertEquals(ResponseCache.Result.HIT, get(cache, cached, "[1]"));
+    }
+
+    @Test
+    public void testAdaptSize() throws IOException {
+        File directory = temporaryFolder.newFolder("cache");
+        ResponseCache cache = new ResponseCache(directory, 1, 4);
+        OkHttpClient direct = new OkHttpClient.Builder().cache(cache.getCache()).build();
+        get(cache, direct, "[1]");
+        cache.getCache().evictAll();
+        get(cache, direct, "[1]");
+        cache.adaptSize();
+        cache.getCache().close();
+
+        assertEquals(2 * 1024 * 1024, new ResponseCache(directory, 1, 4).getCache().maxSize());
+    }
+
+    private ResponseCache.Result get(ResponseCache cache, OkHttpClient client, String expectedBody) throws IOException {
+        Request request = new Request.Builder().url("http://localhost:" + server.getAddress().getPort() + "/comments").build();
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals(expectedBody, response.body().string());
+            return cache.result(response);
+        }
+    }
+}
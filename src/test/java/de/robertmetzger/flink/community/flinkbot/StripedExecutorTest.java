@@ -0,0 +1,70 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StripedExecutorTest {
+
+    /**
+     * Tasks with the same key run one after another, in the order they have been submitted
+     */
+    @Test
+    public void testSameKeyRunsInOrder() throws InterruptedException {
+        StripedExecutor executor = new StripedExecutor("test", 4);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> expected = new ArrayList<>();
+        for(int i = 0; i < 100; i++) {
+            final int task = i;
+            executor.execute(42, () -> {
+                if(task % 10 == 0) {
+                    // give later tasks a chance to overtake
+                    sleep(5);
+                }
+                order.add(task);
+            });
+            expected.add(i);
+        }
+        executor.shutdown(10, TimeUnit.SECONDS);
+        assertEquals(expected, order);
+    }
+
+    /**
+     * A blocked task does not hold up the tasks of other keys
+     */
+    @Test
+    public void testDifferentKeysRunConcurrently() throws InterruptedException {
+        StripedExecutor executor = new StripedExecutor("test", 4);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(1, () -> {
+            try {
+                blocked.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        executor.execute(2, done::countDown);
+        try {
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            blocked.countDown();
+            executor.shutdown(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class TrackingCommentTemplateTest {
+    private static final String[] ASPECTS = {"description", "consensus"};
+    private static final String TEMPLATE = "Hello\n" +
+            "## Automated Checks\n" +
+            "##CHECKS PLACEHOLDER##\n" +
+            "an old warning\n" +
+            "## Review Progress\n" +
+            "* ❓ 1. The [description] looks good.\n" +
+            "* ❓ 2. There is [consensus].\n" +
+            "* ❓ 3. Needs [attention] from.\n" +
+            "Bye";
+
+    private final TrackingCommentTemplate template = new TrackingCommentTemplate(TEMPLATE, ASPECTS,
+            login -> login.equals("@rmetzger") ? login + " [PMC]" : login);
+
+    @Test
+    public void testRender() {
+        ReviewState reviewState = new ReviewState();
+        reviewState.approve("description", "rmetzger");
+        reviewState.approve("description", "fhueske");
+        reviewState.disapprove("consensus", "fhueske");
+        reviewState.getAttention().add("@zentol");
+
+        assertEquals("Hello\n" +
+                "## Automated Checks\n" +
+                "CHECKS\n" +
+                "\n" +
+                "## Review Progress\n" +
+                "* ✅ 1. The [description] looks good.\n" +
+                "    - Approved by @fhueske, @rmetzger [PMC]\n" +
+                "* ❓ 2. There is [consensus].\n" +
+                "* ❗ 3. Needs [attention] from.\n" +
+                "    - Needs attention by @zentol\n" +
+                "Bye", template.render(reviewState, "CHECKS"));
+    }
+
+    @Test
+    public void testFingerprint() {
+        ReviewState reviewState = new ReviewState();
+        reviewState.approve("description", "rmetzger");
+        int fingerprint = template.fingerprint(reviewState, "sha", Collections.emptyList());
+
+        ReviewState same = reviewState.copy();
+        same.disapprove("consensus", "fhueske");
+        assertEquals(fingerprint, template.fingerprint(same, "sha", Collections.emptyList()));
+
+        assertNotEquals(fingerprint, template.fingerprint(reviewState, "sha", Arrays.asList("warning")));
+        assertNotEquals(fingerprint, template.fingerprint(reviewState, "other sha", Collections.emptyList()));
+        same.getAttention().add("@zentol");
+        assertNotEquals(fingerprint, template.fingerprint(same, "sha", Collections.emptyList()));
+    }
+}
@@ -0,0 +1,183 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Posts recorded webhook payloads to a locally running {@link WebhookServer}.
+ */
+public class WebhookServerTest {
+    private static final String SECRET = "It's a Secret to Everybody";
+
+    private Flinkbot bot;
+    private WebhookServer server;
+
+    @Before
+    public void setup() throws IOException {
+        bot = mock(Flinkbot.class);
+        server = new WebhookServer(0, SECRET, "flinkbot/test-repo", "flinkbot", bot);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testSignatureValidation() throws Exception {
+        byte[] payload = "Hello, World!".getBytes(StandardCharsets.UTF_8);
+        // example from the GitHub documentation
+        String expected = "sha256=757107ea0eb2509fc211221cce984b8a37570b6d7586c22c46f4379c8b043e17";
+        assertTrue(WebhookServer.isValidSignature(SECRET, payload, expected, null));
+        assertTrue(WebhookServer.isValidSignature(SECRET, payload, null, sign("HmacSHA1", "sha1=", payload)));
+        assertFalse(WebhookServer.isValidSignature("wrong secret", payload, expected, null));
+        assertFalse(WebhookServer.isValidSignature(SECRET, payload, null, null));
+    }
+
+    @Test
+    public void testMentionInComment() throws Exception {
+        byte[] payload = readPayload("issue_comment.json");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, timeout(5000)).schedulePullRequestUpdate(42, 492192456L, false);
+    }
+
+    @Test
+    public void testInvalidSignatureIsRejected() throws Exception {
+        byte[] payload = readPayload("issue_comment.json");
+        assertEquals(401, post("issue_comment", payload, "sha256=0000"));
+        verify(bot, after(500).never()).schedulePullRequestUpdate(anyInt(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void testOtherRepositoryIsIgnored() throws Exception {
+        server.stop();
+        server = new WebhookServer(0, SECRET, "apache/flink", "flinkbot", bot);
+        server.start();
+
+        byte[] payload = readPayload("issue_comment.json");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, after(500).never()).schedulePullRequestUpdate(anyInt(), anyLong(), anyBoolean());
+    }
+
+    @Test
+    public void testRoutingToRepository() throws Exception {
+        server.stop();
+        Flinkbot otherBot = mock(Flinkbot.class);
+        Map<String, Flinkbot> bots = new HashMap<>();
+        bots.put("apache/flink", otherBot);
+        bots.put("FlinkBot/Test-Repo", bot);
+        server = new WebhookServer(0, SECRET, "flinkbot", bots);
+        server.start();
+
+        byte[] payload = readPayload("issue_comment.json");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, timeout(5000)).schedulePullRequestUpdate(42, 492192456L, false);
+        verify(otherBot, after(500).never()).schedulePullRequestUpdate(anyInt(), anyLong(), anyBoolean());
+    }
+
+    /**
+     * An edit may have removed the commands, so edits are processed even if they don't mention the bot
+     */
+    @Test
+    public void testEditedComment() throws Exception {
+        byte[] payload = readPayload("issue_comment.json", "edited", "Thanks for the PR!");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, timeout(5000)).schedulePullRequestUpdate(42, 492192456L, false);
+    }
+
+    /**
+     * Deleted comments only cause a rebuild if they had commands or were the tracking comment
+     */
+    @Test
+    public void testDeletedComment() throws Exception {
+        byte[] payload = readPayload("issue_comment.json", "deleted", "Thanks for the PR!");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, after(500).never()).schedulePullRequestUpdate(anyInt(), anyLong(), anyBoolean());
+
+        payload = readPayload("issue_comment.json", "deleted", "@flinkbot approve description");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, timeout(5000)).schedulePullRequestUpdate(42, 0, true);
+
+        when(bot.isTrackingComment(42, 492192456L)).thenReturn(true);
+        payload = readPayload("issue_comment.json", "deleted", "Thanks for the PR!");
+        assertEquals(202, post("issue_comment", payload, sign("HmacSHA256", "sha256=", payload)));
+        verify(bot, timeout(5000).times(2)).schedulePullRequestUpdate(42, 0, true);
+    }
+
+    // ------------------------------------ testing tools ------------------------------------
+
+    private int post(String event, byte[] payload, String signature) throws IOException {
+        URL url = new URL("http://localhost:" + server.getPort() + WebhookServer.PATH);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        connection.setRequestProperty("X-GitHub-Event", event);
+        connection.setRequestProperty("X-GitHub-Delivery", "72d3162e-cc78-11e3-81ab-4c9367dc0958");
+        connection.setRequestProperty("X-Hub-Signature-256", signature);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(payload);
+        }
+        int status = connection.getResponseCode();
+        connection.disconnect();
+        return status;
+    }
+
+    private static String sign(String algorithm, String prefix, byte[] payload) throws Exception {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), algorithm));
+        return prefix + WebhookServer.toHex(mac.doFinal(payload));
+    }
+
+    /**
+     * Returns the recorded payload with the given action and comment body.
+     */
+    private static byte[] readPayload(String name, String action, String body) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        ObjectNode json = (ObjectNode) mapper.readTree(readPayload(name));
+        json.put("action", action);
+        ((ObjectNode) json.path("comment")).put("body", body);
+        return mapper.writeValueAsBytes(json);
+    }
+
+    private static byte[] readPayload(String name) throws IOException {
+        try (InputStream in = WebhookServerTest.class.getResourceAsStream("/webhooks/" + name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
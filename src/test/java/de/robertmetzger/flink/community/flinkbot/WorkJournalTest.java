@@ -0,0 +1,130 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkJournalTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    /**
+     * Only the updates which are not done are restored
+     */
+    @Test
+    public void testRestoreOpenItems() throws IOException {
+        File dir = tmp.newFolder();
+        WorkJournal journal = WorkJournal.open(dir);
+        long first = journal.accept(42, 1337L, false);
+        long second = journal.accept(43, 0, true);
+        long third = journal.accept(42, 1338L, false);
+        journal.done(first);
+        journal.done(third);
+
+        List<WorkJournal.Item> open = WorkJournal.open(dir).getOpenItems();
+        assertEquals(1, open.size());
+        WorkJournal.Item item = open.get(0);
+        assertEquals(second, item.getId());
+        assertEquals(43, item.getPrID());
+        assertEquals(0, item.getTriggeringCommentId());
+        assertTrue(item.isRebuild());
+    }
+
+    @Test
+    public void testIdsContinueAfterRestart() throws IOException {
+        File dir = tmp.newFolder();
+        WorkJournal journal = WorkJournal.open(dir);
+        long first = journal.accept(42, 0, false);
+        journal.done(first);
+
+        WorkJournal restored = WorkJournal.open(dir);
+        assertTrue(restored.accept(43, 0, false) > first);
+        assertEquals(1, restored.getOpenItems().size());
+    }
+
+    /**
+     * Segments are deleted once all their updates are done
+     */
+    @Test
+    public void testSegmentsAreDeleted() throws IOException {
+        File dir = tmp.newFolder();
+        // four records per segment
+        WorkJournal journal = WorkJournal.open(dir, 4 * WorkJournal.RECORD_SIZE);
+        long pending = journal.accept(1, 0, false);
+        for(int i = 2; i < 20; i++) {
+            journal.done(journal.accept(i, 0, false));
+        }
+        assertTrue(dir.list().length > 2);
+
+        journal.done(pending);
+        journal.done(journal.accept(20, 0, false));
+        journal.done(journal.accept(21, 0, false));
+        assertEquals(1, dir.list().length);
+        assertTrue(WorkJournal.open(dir, 4 * WorkJournal.RECORD_SIZE).getOpenItems().isEmpty());
+    }
+
+    /**
+     * A record which has not been written completely is ignored, together with everything after it
+     */
+    @Test
+    public void testTornRecord() throws IOException {
+        File dir = tmp.newFolder();
+        WorkJournal journal = WorkJournal.open(dir);
+        journal.accept(42, 0, false);
+        journal.accept(43, 0, false);
+        File segment = dir.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // corrupt the PR number of the second record
+            file.seek(WorkJournal.RECORD_SIZE + 4);
+            file.write(0xFF);
+        }
+
+        WorkJournal restored = WorkJournal.open(dir);
+        assertEquals(1, restored.getOpenItems().size());
+        assertEquals(42, restored.getOpenItems().get(0).getPrID());
+        // new records go to a new segment
+        restored.accept(44, 0, false);
+        assertEquals(2, WorkJournal.open(dir).getOpenItems().size());
+    }
+
+    /**
+     * The replays of an update are counted across restarts, and do not keep a given up update
+     */
+    @Test
+    public void testReplaysAreCounted() throws IOException {
+        File dir = tmp.newFolder();
+        WorkJournal journal = WorkJournal.open(dir, 4 * WorkJournal.RECORD_SIZE);
+        long failing = journal.accept(42, 0, false);
+        for(int restart = 0; restart < 3; restart++) {
+            journal = WorkJournal.open(dir, 4 * WorkJournal.RECORD_SIZE);
+            assertEquals(restart, journal.getOpenItems().get(0).getReplays());
+            journal.replayed(failing);
+        }
+        journal = WorkJournal.open(dir, 4 * WorkJournal.RECORD_SIZE);
+        assertEquals(3, journal.getOpenItems().get(0).getReplays());
+
+        // giving up on the update releases its segment
+        journal.done(failing);
+        journal.done(journal.accept(43, 0, false));
+        journal.done(journal.accept(44, 0, false));
+        assertTrue(WorkJournal.open(dir, 4 * WorkJournal.RECORD_SIZE).getOpenItems().isEmpty());
+        assertEquals(1, dir.list().length);
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        WorkJournal journal = WorkJournal.disabled();
+        journal.done(journal.accept(42, 0, false));
+        journal.accept(43, 0, false);
+        assertTrue(journal.getOpenItems().isEmpty());
+    }
+}
@@ -0,0 +1,88 @@
+package de.robertmetzger.flink.community.flinkbot;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WriteBehindTest {
+
+    private final List<String> written = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testCoalesce() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(2);
+        WriteBehind writeBehind = new WriteBehind(200, (prID, write) -> {
+            write.run();
+            done.countDown();
+        });
+        writeBehind.submit(1, () -> written.add("1: first"));
+        writeBehind.submit(2, () -> written.add("2: only"));
+        writeBehind.submit(1, () -> written.add("1: second"));
+        writeBehind.submit(1, () -> written.add("1: final"));
+        assertTrue(written.isEmpty());
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(300);
+        Collections.sort(written);
+        assertEquals("[1: final, 2: only]", written.toString());
+        assertTrue(writeBehind.getPending().isEmpty());
+    }
+
+    @Test
+    public void testFlush() {
+        WriteBehind writeBehind = new WriteBehind(TimeUnit.HOURS.toMillis(1), (prID, write) -> write.run());
+        writeBehind.submit(1, () -> written.add("1: first"));
+        writeBehind.submit(1, () -> written.add("1: final"));
+        assertEquals(Collections.singletonList(1), writeBehind.getPending());
+
+        writeBehind.flush();
+        assertEquals("[1: final]", written.toString());
+        assertTrue(writeBehind.getPending().isEmpty());
+        writeBehind.flush();
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    public void testImmediate() {
+        WriteBehind writeBehind = new WriteBehind(0, (prID, write) -> {
+            throw new AssertionError("Writes are executed by the caller");
+        });
+        writeBehind.submit(1, () -> written.add("1: first"));
+        writeBehind.submit(1, () -> written.add("1: second"));
+        assertEquals("[1: first, 1: second]", written.toString());
+    }
+
+    @Test
+    public void testAfterWrite() {
+        WriteBehind writeBehind = new WriteBehind(TimeUnit.HOURS.toMillis(1), (prID, write) -> {
+            try {
+                write.run();
+            } catch (RuntimeException e) {
+                written.add(prID + ": " + e.getMessage());
+            }
+        });
+        writeBehind.afterWrite(1, () -> written.add("1: nothing pending"));
+        writeBehind.submit(1, () -> written.add("1: first"));
+        writeBehind.afterWrite(1, () -> written.add("1: after first"));
+        writeBehind.submit(1, () -> written.add("1: final"));
+        writeBehind.afterWrite(1, () -> written.add("1: after final"));
+        writeBehind.submit(2, () -> {
+            throw new RuntimeException("Write failed");
+        });
+        writeBehind.afterWrite(2, () -> written.add("2: after failed write"));
+        assertEquals("[1: nothing pending]", written.toString());
+
+        writeBehind.flush();
+        assertTrue(written.containsAll(Arrays.asList("1: final", "1: after first", "1: after final", "2: Write failed")));
+        assertFalse(written.contains("2: after failed write"));
+    }
+}
@@ -0,0 +1,139 @@
+package de.robertmetzger.flink.community.flinkbot.checks;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JiraIssueCacheTest {
+
+    private final AtomicLong now = new AtomicLong(1000);
+    private final List<Collection<String>> lookups = new ArrayList<>();
+
+    private boolean down;
+
+    /**
+     * Pretends to be Jira: even issue numbers are assigned, FLINK-0 does not exist and fails any search.
+     */
+    private Map<String, Boolean> resolve(Collection<String> keys) throws IOException {
+        lookups.add(new ArrayList<>(keys));
+        if(down) {
+            throw new IOException("Connection refused");
+        }
+        if(keys.contains("FLINK-0")) {
+            throw new IllegalArgumentException("An issue with key 'FLINK-0' does not exist");
+        }
+        Map<String, Boolean> result = new HashMap<>();
+        for(String key: keys) {
+            result.put(key, Integer.parseInt(key.substring("FLINK-".length())) % 2 == 0);
+        }
+        return result;
+    }
+
+    @Test
+    public void testPrefetchResolvesInOneLookup() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 10, 100, now::get);
+        cache.prefetch(Arrays.asList("FLINK-1", "FLINK-2", "FLINK-3", "FLINK-2"));
+        assertEquals(1, lookups.size());
+        assertEquals(3, lookups.get(0).size());
+
+        assertFalse(cache.isAssigned("FLINK-1"));
+        assertTrue(cache.isAssigned("FLINK-2"));
+        assertEquals(1, lookups.size());
+    }
+
+    @Test
+    public void testExpiry() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 10, 100, now::get);
+        cache.prefetch(Arrays.asList("FLINK-1", "FLINK-2"));
+
+        // unassigned issues expire first
+        now.addAndGet(50);
+        assertTrue(cache.isAssigned("FLINK-2"));
+        assertFalse(cache.isAssigned("FLINK-1"));
+        assertEquals(2, lookups.size());
+
+        now.addAndGet(100);
+        assertTrue(cache.isAssigned("FLINK-2"));
+        assertEquals(3, lookups.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 100, 2, now::get);
+        cache.prefetch(Arrays.asList("FLINK-1", "FLINK-2"));
+        cache.isAssigned("FLINK-1");
+        cache.isAssigned("FLINK-3");
+        assertEquals(2, cache.size());
+        assertEquals(2, lookups.size());
+
+        cache.isAssigned("FLINK-1");
+        assertEquals(2, lookups.size());
+        cache.isAssigned("FLINK-2");
+        assertEquals(3, lookups.size());
+    }
+
+    @Test
+    public void testFailedBatchFallsBackToSingleLookups() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 100, 100, now::get);
+        cache.prefetch(Arrays.asList("FLINK-0", "FLINK-1", "FLINK-2"));
+        assertEquals(4, lookups.size());
+        assertNull(cache.isAssigned("FLINK-0"));
+        assertFalse(cache.isAssigned("FLINK-1"));
+        assertEquals(3, cache.size());
+        assertEquals(4, lookups.size());
+    }
+
+    @Test
+    public void testMissingIssuesAreCachedBriefly() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 10, 100, now::get);
+        assertNull(cache.isAssigned("FLINK-0"));
+        assertNull(cache.isAssigned("FLINK-0"));
+        assertEquals(1, lookups.size());
+
+        now.addAndGet(10);
+        assertNull(cache.isAssigned("FLINK-0"));
+        assertEquals(2, lookups.size());
+    }
+
+    @Test
+    public void testFallbackIsCapped() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 100, 100, now::get);
+        List<String> keys = new ArrayList<>();
+        for(int i = 0; i < JiraIssueCache.BATCH_SIZE; i++) {
+            keys.add("FLINK-" + i);
+        }
+        cache.prefetch(keys);
+        assertEquals(1 + JiraIssueCache.MAX_SINGLE_LOOKUPS, lookups.size());
+
+        // the others are looked up when needed
+        assertTrue(cache.isAssigned("FLINK-42"));
+        assertEquals(2 + JiraIssueCache.MAX_SINGLE_LOOKUPS, lookups.size());
+    }
+
+    @Test
+    public void testNoFallbackWhileJiraIsDown() {
+        JiraIssueCache cache = new JiraIssueCache(this::resolve, 100, 100, 100, now::get);
+        down = true;
+        cache.prefetch(Arrays.asList("FLINK-1", "FLINK-2", "FLINK-3"));
+        assertEquals(1, lookups.size());
+        assertEquals(0, cache.size());
+
+        // failures of the network are not cached
+        assertNull(cache.isAssigned("FLINK-1"));
+        down = false;
+        assertFalse(cache.isAssigned("FLINK-1"));
+        assertEquals(3, lookups.size());
+    }
+}